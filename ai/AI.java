@@ -1,9 +1,36 @@
 package ai;
 
+import java.util.Arrays;
+
 import player.Move;
 
 public class AI {
 
+  // The deepest iteration bestMoveBefore() will start.
+  public final static int MAX_DEPTH = 40;
+
+  /**
+   * evaluate() scores positions in fixed point: SCALE is worth 1.0 in the
+   * units of eval().
+   */
+  public final static int SCALE = 8000;
+
+  /**
+   * The score of a completed network for the AI, and -WIN of one for its
+   * opponent. The search scores a network completed ply moves into it as
+   * WIN - ply (or -(WIN - ply)), so it prefers the quickest win and the
+   * slowest loss. Every score within MAX_DEPTH of WIN is such a win; see
+   * isWin() and isLoss().
+   */
+  public final static int WIN = 1000000;
+
+  // Beyond every score; the window of a search that knows nothing yet.
+  final static int INFINITY = WIN + 1;
+
+  // Half the width of the window bestMoveBefore() searches around the score
+  // of the previous iteration.
+  final static int ASPIRATION_WINDOW = SCALE / 20;
+
   /**
    * eval() analyzes the current board with respect to the current player 
    * for a given move returning a value between -Double.MAX_VALUE and Double.MAX_VALUE signifying
@@ -16,6 +43,56 @@ public class AI {
    * @author Alec Mouri, Austin Chen, Michael Liu
    */
   public static double eval(int color, Board board) {
+    return eval(color, new BitBoard(board));
+  }
+
+  /**
+   * eval() scores a BitBoard exactly as eval(int, Board) scores the
+   * equivalent Board: evaluate() / SCALE, or +/-Double.MAX_VALUE for a
+   * network.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @return a double signifying the strength of a move
+   */
+  public static double eval(int color, BitBoard board) {
+    int score = evaluate(color, board);
+    if (score == WIN) {
+      return Double.MAX_VALUE;
+    }
+    if (score == -WIN) {
+      return -Double.MAX_VALUE;
+    }
+    return (double) score / SCALE;
+  }
+
+  /**
+   * evaluate() is the fixed-point evaluation function the search uses. It
+   * returns WIN if color has a network, -WIN if its opponent has one, and
+   * otherwise a score well inside (-WIN, WIN).
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @return the strength of the position for color, in units of 1 / SCALE
+   */
+  public static int evaluate(int color, BitBoard board) {
+    //Check for winning Network
+    if (board.hasNetwork(color)) {
+      return WIN;
+    }
+    if (board.hasNetwork(invertColor(color))) {
+      return -WIN;
+    }
+    return positional(color, board);
+  }
+
+  /**
+   * positional() is evaluate() for a position in which neither side has a
+   * network. Connections, centrality and chip counts are running totals the
+   * board keeps as moves are made, and the longest paths are cached by
+   * position, so the cost is mostly in counting the possible moves.
+   */
+  private static int positional(int color, BitBoard board) {
     //Possible heuristics for determining optimal board state for each player are:
     //	1. Number of connections currently made
     //	2. Number of possible moves
@@ -24,66 +101,42 @@ public class AI {
     //	5. Whether possible connections can be broken
     //  6. Central Tendency
     //In order of importance: Number of connections currently made > Number of possible moves > Size of largest Network
-    double connections = 0;
-    double possibleMoves = 0;
-    double ourNetworkLength = 0.0;
-    double opponentNetworkLength = 0.0;
-    double netLength = 0.0;
-    double central = 0.0;
-
-    double connectionWeight = .40;
-    double possibleMovesWeight = .35;
-    double longestNetworkWeight = .15;
-    double centralWeight = .10;
-    double centralPosition = (board.grid.length - 1) / 2.0;
-    
-
-    int[] curr;
-
-    //Check for winning Network
-    if (board.hasNetwork(color)) {
-      return Double.MAX_VALUE;
-    }
-    if (board.hasNetwork(invertColor(color))) {
-      return -Double.MAX_VALUE;
-    }
+    int opponent = invertColor(color);
 
     //Size of largest Network
-    ourNetworkLength = board.longestPathLength(color);
-    opponentNetworkLength = board.longestPathLength(invertColor(color));
-    netLength = ourNetworkLength - opponentNetworkLength;
+    int netLength = board.longestPathLength(color)
+        - board.longestPathLength(opponent);
 
-    //Number of current connections, and measures central tendencies
-    for (Object pos : board.locationOfPieces(color)) {
-      curr = (int[]) pos;
-      connections += board.connectedChips(curr).length();
-      central = central + (Math.abs(curr[0] - centralPosition) + Math.abs(curr[1] - centralPosition))
-          / 2;
-    }
-    for (Object pos : board.locationOfPieces(invertColor(color))) {
-      curr = (int[]) pos;
-      connections -= board.connectedChips(curr).length();
-      central = central - (Math.abs(curr[0] - centralPosition) + Math.abs(curr[1] - centralPosition))
-          / 2;
-    }
+    //Number of current connections (each counted from both ends), and twice
+    //the distance of each chip from the center along both axes
+    int connections = board.connectionTotal(color)
+        - board.connectionTotal(opponent);
+    int central = board.centralityTotal(color) - board.centralityTotal(opponent);
+    int chips = board.numberChips(color) + board.numberChips(opponent);
 
     //Number of possible moves
-    possibleMoves = board.allValidMoves(color).length()
-        - board.allValidMoves(invertColor(color)).length();
+    int possibleMoves = board.countMoves(color) - board.countMoves(opponent);
+
+    // The weights are .40 per 40 connections, .35 per 40 possible moves, .15
+    // per 6 chips of network and .10 per unit of average central distance,
+    // times SCALE. The central term is rounded towards zero.
+    return connections * 40 + possibleMoves * 70 + netLength * 200
+        + (chips == 0 ? 0 : central * 200 / chips);
+  }
 
-    connections /= 2; //b/c doublecounted
-    connections /= 40; //scale down connections
-    connections *= connectionWeight;
-    possibleMoves /= 40;
-    possibleMoves *= possibleMovesWeight;
-    netLength /= 6;
-    netLength *= longestNetworkWeight;
-    central = central
-        / (board.locationOfPieces(color).length() + board.locationOfPieces(
-            invertColor(color)).length());
-    central *= centralWeight;
+  /**
+   * isWin() tells whether a search score means the AI completes a network.
+   */
+  public static boolean isWin(int score) {
+    return score >= WIN - MAX_DEPTH;
+  }
 
-    return connections + possibleMoves + netLength + central;
+  /**
+   * isLoss() tells whether a search score means the opponent completes a
+   * network.
+   */
+  public static boolean isLoss(int score) {
+    return score <= -(WIN - MAX_DEPTH);
   }
 
   /**
@@ -98,78 +151,544 @@ public class AI {
    * @author Michael Liu
    */
   public static Move bestMove(int color, Board board, int depth) {
-    return (Move) bestMoveHelper(color, color, board, depth, -Double.MAX_VALUE,
-        Double.MAX_VALUE)[0];
+    return bestMove(color, new BitBoard(board), depth);
   }
 
   /**
-   * bestMoveHelper() returns an Object[] containing the strongest move for
-   * the given player using our evaluation function along with the strength
-   * of the given move. It employs alpha-beta pruning. The alpha-beta pruning
-   * is based off of the psuedocode found here:
-   * http://www.cs.berkeley.edu/~jrs/61b/lec/17.pdf
+   * bestMove() returns the strongest possible Move on a BitBoard using our
+   * evaluation function.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param depth the depth to which eval() checks
+   * @return the strongest move
+   */
+  public static Move bestMove(int color, BitBoard board, int depth) {
+    return bestMove(color, board, depth, null);
+  }
+
+  /**
+   * bestMove() returns the strongest possible Move on a BitBoard, reusing
+   * and filling in the given transposition table.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param depth the depth to which eval() checks
+   * @param table results of earlier searches, or null to search without one
+   * @return the strongest move
+   */
+  public static Move bestMove(int color, BitBoard board, int depth,
+      TranspositionTable table) {
+    return bestMove(color, board, depth, table, null);
+  }
+
+  /**
+   * bestMove() returns the strongest possible Move on a BitBoard, reusing
+   * and filling in the given transposition table and evaluation cache.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param depth the depth to which eval() checks
+   * @param table results of earlier searches, or null to search without one
+   * @param cache earlier evaluations, or null to search without one
+   * @return the strongest move
+   */
+  public static Move bestMove(int color, BitBoard board, int depth,
+      TranspositionTable table, EvalCache cache) {
+    return bestMove(color, board, depth, table, cache, null);
+  }
+
+  /**
+   * bestMove() searches as above and records what the search did.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param depth the depth to which eval() checks
+   * @param table results of earlier searches, or null to search without one
+   * @param cache earlier evaluations, or null to search without one
+   * @param stats filled in with the search's figures, unless it is null
+   * @return the strongest move
+   */
+  public static Move bestMove(int color, BitBoard board, int depth,
+      TranspositionTable table, EvalCache cache, SearchStats stats) {
+    long start = System.nanoTime();
+    SearchContext context = new SearchContext(board, color, table);
+    context.evalCache = cache;
+    int score = bestMoveHelper(color, depth, 0, -INFINITY, INFINITY, context);
+    if (stats != null) {
+      stats.clear();
+      stats.record(depth, System.nanoTime() - start, score);
+      stats.add(context);
+      stats.iteration(context.nodes);
+      stats.principalVariation = principalVariation(board, color, color,
+          context.bestMove, depth, table);
+    }
+    return toMove(context.bestMove);
+  }
+
+  /**
+   * bestMoveBefore() searches one ply deeper at a time, starting at depth 1,
+   * until the deadline passes. An iteration cut short by the deadline is
+   * thrown away, so the result is the best move of the deepest search that
+   * finished. The depth 1 search always runs to completion.
+   * 
+   * Each iteration after the first searches a narrow aspiration window
+   * around the previous iteration's score, widening it to the full range on
+   * the side the score falls out of.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param deadline the System.nanoTime() by which to return
+   * @param table results of earlier searches, or null to search without one
+   * @return the strongest move found in time
+   */
+  public static Move bestMoveBefore(int color, BitBoard board, long deadline,
+      TranspositionTable table) {
+    return bestMoveBefore(color, board, deadline, table, null);
+  }
+
+  /**
+   * bestMoveBefore() deepens the search until the deadline passes, as above,
+   * also reusing and filling in the given evaluation cache.
    * 
    * @param color the turn of the current player (determined by color)
-   * @param AIcolor the color of the AI player
    * @param board the current state of the board
+   * @param deadline the System.nanoTime() by which to return
+   * @param table results of earlier searches, or null to search without one
+   * @param cache earlier evaluations, or null to search without one
+   * @return the strongest move found in time
+   */
+  public static Move bestMoveBefore(int color, BitBoard board, long deadline,
+      TranspositionTable table, EvalCache cache) {
+    return bestMoveBefore(color, board, deadline, table, cache, null);
+  }
+
+  /**
+   * bestMoveBefore() deepens the search until the deadline passes, as above,
+   * and records what the search did. The depth recorded is that of the
+   * deepest iteration finished.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param deadline the System.nanoTime() by which to return
+   * @param table results of earlier searches, or null to search without one
+   * @param cache earlier evaluations, or null to search without one
+   * @param stats filled in with the search's figures, unless it is null
+   * @return the strongest move found in time
+   */
+  public static Move bestMoveBefore(int color, BitBoard board, long deadline,
+      TranspositionTable table, EvalCache cache, SearchStats stats) {
+    return bestMoveBefore(color, board, 0, deadline, table, cache, stats);
+  }
+
+  /**
+   * bestMoveBefore() deepens the search until the deadline passes, as above,
+   * but starts no iteration once the target has passed, nor one TimeManager
+   * predicts will not finish by the deadline.
+   * 
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board
+   * @param target the System.nanoTime() after which to start no iteration,
+   *        or 0 to deepen until the deadline
+   * @param deadline the System.nanoTime() by which to return
+   * @param table results of earlier searches, or null to search without one
+   * @param cache earlier evaluations, or null to search without one
+   * @param stats filled in with the search's figures, unless it is null
+   * @return the strongest move found in time
+   */
+  public static Move bestMoveBefore(int color, BitBoard board, long target,
+      long deadline, TranspositionTable table, EvalCache cache,
+      SearchStats stats) {
+    SearchContext context = new SearchContext(board, color, table);
+    context.evalCache = cache;
+    context.target = target;
+    context.deadline = deadline;
+    return deepen(color, context, stats);
+  }
+
+  /**
+   * deepen() runs bestMoveBefore()'s iterative deepening for color, to move
+   * in the context's position, until the context's deadline passes or its
+   * search is stopped, or as its target allows (see bestMoveBefore()).
+   * Another thread may move the deadline or target, or stop the search,
+   * while it runs. A deadline of 0 deepens until the search is stopped, a
+   * network is forced or MAX_DEPTH is reached.
+   * 
+   * Color need not be the context's AIcolor: with the opponent to move, the
+   * move returned is the reply the search expects, and the table is filled
+   * in for AIcolor's replies to every move.
+   * 
+   * @param color the color to move
+   * @param context the board, AI color, table and deadline of this search
+   * @param stats filled in with the search's figures, unless it is null
+   * @return the strongest move of the deepest iteration finished, or null
+   *         if the search was stopped before one was
+   */
+  static Move deepen(int color, SearchContext context, SearchStats stats) {
+    long start = System.nanoTime();
+    if (stats != null) {
+      stats.clear();
+    }
+    Move best = null;
+    int score = 0, bestScore = 0, finished = 0;
+    // The nodes the two iterations before the last visited.
+    long previous = 0, older = 0;
+    for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+      long nodes = context.nodes, began = System.nanoTime();
+      // The first iteration always finishes, unless the search is stopped.
+      context.mustFinish = depth == 1;
+      int alpha = -INFINITY, beta = INFINITY;
+      if (depth > 1) {
+        alpha = score - ASPIRATION_WINDOW;
+        beta = score + ASPIRATION_WINDOW;
+      }
+      while (true) {
+        score = bestMoveHelper(color, depth, 0, alpha, beta, context);
+        if (context.aborted || (score > alpha && score < beta)) {
+          break;
+        }
+        if (score <= alpha) {
+          alpha = -INFINITY;
+        }
+        else {
+          beta = INFINITY;
+        }
+      }
+      if (context.aborted) {
+        break;
+      }
+      best = toMove(context.bestMove);
+      bestScore = score;
+      finished = depth;
+      nodes = context.nodes - nodes;
+      if (stats != null) {
+        stats.iteration(nodes);
+      }
+      // A network is forced one way or the other; searching deeper cannot
+      // change the outcome.
+      if (isWin(score) || isLoss(score)) {
+        break;
+      }
+      long now = System.nanoTime(), deadline = context.deadline;
+      if (deadline != 0 && now - deadline >= 0) {
+        break;
+      }
+      // With a target, stop once it has passed, or if the next iteration is
+      // predicted to run past the deadline and be thrown away.
+      long target = context.target;
+      if (target != 0 && (now - target >= 0 || (deadline != 0 && now
+          + TimeManager.predict(now - began, nodes, previous, older)
+          - deadline > 0))) {
+        break;
+      }
+      older = previous;
+      previous = nodes;
+    }
+    if (stats != null) {
+      stats.record(finished, System.nanoTime() - start, bestScore);
+      stats.add(context);
+      stats.principalVariation = principalVariation(context.board, color,
+          context.AIcolor, best == null ? BitBoard.NO_MOVE
+              : BitBoard.encode(best), finished, context.table);
+    }
+    return best;
+  }
+
+  /**
+   * principalVariation() follows the transposition tables' moves from the
+   * position after the given first move, to find the line of play a search
+   * expects. Each position takes the move of the deepest entry any of the
+   * tables has for it. The line stops at a position none of them has, at a
+   * move that is not valid there (an entry may be stale), at a network, or
+   * after length moves.
+   *
+   * @param board the root position, which is left as it was
+   * @param color the color to move at the root
+   * @param AIcolor the color the tables' scores are for
+   * @param first the move chosen at the root, packed, or BitBoard.NO_MOVE
+   * @param length the most moves to return
+   * @param tables the tables the search filled in; any may be null
+   * @return the line, packed
+   */
+  static int[] principalVariation(BitBoard board, int color, int AIcolor,
+      int first, int length, TranspositionTable... tables) {
+    int[] line = new int[Math.max(length, 1)];
+    int count = 0;
+    int c = color, move = first;
+    while (move != BitBoard.NO_MOVE && count < line.length
+        && board.isValid(c, BitBoard.decode(move))) {
+      board.makeMove(c, move);
+      line[count++] = move;
+      if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+        break;
+      }
+      c = invertColor(c);
+      move = BitBoard.NO_MOVE;
+      int symmetry = board.canonicalSymmetry(c);
+      long key = tableKey(board, c, AIcolor, symmetry);
+      int deepest = -1;
+      for (TranspositionTable table : tables) {
+        long entry = table == null ? TranspositionTable.MISS
+            : table.probe(key);
+        if (entry != TranspositionTable.MISS
+            && TranspositionTable.depth(entry) > deepest) {
+          deepest = TranspositionTable.depth(entry);
+          move = BitBoard.transformMove(BitBoard.inverse(symmetry),
+              TranspositionTable.move(entry));
+        }
+      }
+    }
+    for (int i = count - 1; i >= 0; i--) {
+      board.unmakeMove(i % 2 == 0 ? color : invertColor(color), line[i]);
+    }
+    return Arrays.copyOf(line, count);
+  }
+
+  /**
+   * toMove() unpacks a packed move, or returns null for BitBoard.NO_MOVE.
+   */
+  static Move toMove(int move) {
+    return move == BitBoard.NO_MOVE ? null : BitBoard.decode(move);
+  }
+
+  /**
+   * bestMoveHelper() returns the strength of the strongest move for the
+   * given player using our evaluation function, and at the root (ply 0)
+   * records that move as the context's bestMove. It employs alpha-beta
+   * pruning. The alpha-beta pruning is based off of the psuedocode found
+   * here:
+   * http://www.cs.berkeley.edu/~jrs/61b/lec/17.pdf
+   * 
+   * Unless the context turns it off, this is a principal variation search:
+   * only the first move is searched with the full window, and every later
+   * move first with a null window, which only asks whether the move is
+   * better than the best so far; only if it is, it is searched again with
+   * the full window. The search is fail-soft: a score outside (alpha, beta)
+   * is a bound on the true score, not just the bound that was crossed. Of
+   * moves with equal scores, the first searched is kept.
+   * 
+   * Scores are evaluate()'s, with a network ply moves away worth
+   * +/-(WIN - ply). A node whose window lies beyond the quickest win or loss
+   * still possible returns at once.
+   * 
+   * If the context has an evaluation cache, leaves are scored from it when
+   * possible and stored in it otherwise.
+   * 
+   * If the context has a table, positions already searched deeply enough are
+   * answered from it, and every position searched is stored in it. Moves are
+   * searched in the order the context's MoveOrdering picks. If the
+   * context's deadline passes, the search unwinds at once and its result
+   * must be ignored.
+   * 
+   * @param color the turn of the current player (determined by color)
    * @param depth the depth to which eval() checks
-   * @param alpha
-   * @param beta
-   * @return an Object[] containing the strongest move and its corresponding strength
+   * @param ply the number of moves made since the root of the search
+   * @param alpha the score AIcolor is already sure of
+   * @param beta the score the opponent of AIcolor is already sure of
+   * @param context the board, AI color, table and deadline of this search
+   * @return the strength of the strongest move
    * 
    * @author Michael Liu
    */
-  private static Object[] bestMoveHelper(int color, int AIcolor, Board board,
-      int depth, double alpha, double beta) {
+  static int bestMoveHelper(int color, int depth, int ply, int alpha,
+      int beta, SearchContext context) {
+    BitBoard board = context.board;
+    int AIcolor = context.AIcolor;
+    TranspositionTable table = context.table;
     
-    if (board.locationOfPieces(AIcolor).length() == 0) {
+    if (board.numberChips(AIcolor) == 0) {
       if (board.isValid(AIcolor, new Move(3, 3))) {
-        return new Object[] { new Move(3, 3), 0.0 };
+        context.bestMove = BitBoard.encode(new Move(3, 3));
       }
       else {
-        return new Object[] { new Move(3, 4), 0.0 };
+        context.bestMove = BitBoard.encode(new Move(3, 4));
       }
+      return 0;
     }
 
-    Object[] optimalMove = new Object[] { null, 0.0 };
-    Object[] replyMove;
-
-    if (depth == 0 || board.hasNetwork(AIcolor) || board.hasNetwork(invertColor(AIcolor))) {
-      optimalMove[1] = eval(AIcolor, board);
-      return optimalMove;
+    if (context.visit()) {
+      return 0;
+    }
+    // Only leaves are cached, and only those without a network, so a hit
+    // saves looking for networks as well as evaluating. Equivalent boards
+    // share an entry, scored for the color AIcolor becomes on the canonical
+    // board.
+    EvalCache cache = depth == 0 ? context.evalCache : null;
+    long cacheKey = 0;
+    int cacheColor = AIcolor;
+    if (cache != null) {
+      int symmetry = board.canonicalSymmetry();
+      cacheKey = board.symmetricHash(symmetry);
+      cacheColor = BitBoard.transformColor(symmetry, AIcolor);
+      int cached = cache.probe(cacheKey, cacheColor);
+      context.evalProbes++;
+      if (cached != EvalCache.MISS) {
+        context.evalHits++;
+        return cached;
+      }
+    }
+    if (board.hasNetwork(AIcolor)) {
+      return WIN - ply;
+    }
+    if (board.hasNetwork(invertColor(AIcolor))) {
+      return -(WIN - ply);
+    }
+    if (depth == 0) {
+      int score = positional(AIcolor, board);
+      context.leafEvals++;
+      if (cache != null) {
+        cache.store(cacheKey, cacheColor, score);
+      }
+      return score;
     }
 
-    if (color == AIcolor) {
-      optimalMove[1] = -Double.MAX_VALUE;
+    // No move from here can complete a network sooner than the next ply.
+    int quickest = WIN - (ply + 1);
+    if (-quickest >= beta) {
+      return -quickest;
     }
-    else {
-      optimalMove[1] = Double.MAX_VALUE;
+    if (quickest <= alpha) {
+      return quickest;
     }
-    for (Object o : board.allValidMoves(color)) {
-      Move m = (Move) o;
+
+    int symmetry = 0;
+    long key = 0;
+    int tableMove = BitBoard.NO_MOVE;
+    if (table != null) {
+      symmetry = board.canonicalSymmetry(color);
+      key = tableKey(board, color, AIcolor, symmetry);
+      long entry = table.probe(key);
+      boolean hit = entry != TranspositionTable.MISS;
+      context.tableProbes++;
+      if (hit) {
+        context.tableHits++;
+      }
+      if (hit && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+        int score = fromTable(TranspositionTable.score(entry), ply);
+        int bound = TranspositionTable.bound(entry);
+        if (bound == TranspositionTable.EXACT
+            || (bound == TranspositionTable.LOWER && score >= beta)
+            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+          context.tableCutoffs++;
+          return score;
+        }
+      }
+      if (hit) {
+        tableMove = BitBoard.transformMove(BitBoard.inverse(symmetry),
+            TranspositionTable.move(entry));
+      }
+    }
+    int alpha0 = alpha, beta0 = beta;
+
+    boolean maximizing = color == AIcolor;
+    int best = maximizing ? -INFINITY : INFINITY;
+    int bestMove = BitBoard.NO_MOVE;
+    int[] moves = context.moves(ply);
+    int count = board.generateMoves(color, moves);
+    context.ordering.order(moves, count, ply, color, tableMove);
+    context.expanded++;
+    for (int i = 0; i < count; i++) {
+      int m = moves[i];
       board.makeMove(color, m);
-      replyMove = bestMoveHelper(invertColor(color), AIcolor, board, depth - 1, alpha, beta);
-      Double heuristic = (Double) replyMove[1];
+      context.movesSearched++;
+      int score;
+      if (i == 0 || !context.principalVariation) {
+        score = score(color, depth, ply, alpha, beta, context);
+      }
+      else if (maximizing) {
+        score = score(color, depth, ply, alpha, alpha + 1, context);
+        if (score > alpha && score < beta && !context.aborted) {
+          score = score(color, depth, ply, score - 1, beta, context);
+        }
+      }
+      else {
+        score = score(color, depth, ply, beta - 1, beta, context);
+        if (score < beta && score > alpha && !context.aborted) {
+          score = score(color, depth, ply, alpha, score + 1, context);
+        }
+      }
       board.unmakeMove(color, m);
-
-      if (color == AIcolor && (Double) optimalMove[1] <= heuristic) {
-        optimalMove[0] = m;
-        optimalMove[1] = heuristic;
-        alpha = heuristic;
+      if (context.aborted) {
+        return best;
       }
-      else if (color == invertColor(AIcolor) && (Double) optimalMove[1] >= heuristic) {
-        optimalMove[0] = m;
-        optimalMove[1] = heuristic;
-        beta = heuristic;
+
+      if (maximizing ? score > best : score < best) {
+        best = score;
+        bestMove = m;
+        if (ply == 0) {
+          context.bestMove = m;
+        }
+        if (maximizing) {
+          alpha = Math.max(alpha, score);
+        }
+        else {
+          beta = Math.min(beta, score);
+        }
       }
 
-      if (beta < alpha) {
+      if (alpha >= beta) {
+        context.ordering.cutoff(m, i, ply, color, depth);
         break;
       }
     }
-    return optimalMove;
+    if (count == 0) {
+      // No legal move: treat it as losing to a network on the next ply.
+      best = maximizing ? -quickest : quickest;
+    }
+
+    if (table != null) {
+      // A score at or beyond the edge of the window we were given is only a
+      // bound: at or above beta we cut off (or every reply did), at or below
+      // alpha every reply failed low (or we cut off).
+      int bound = best >= beta0 ? TranspositionTable.LOWER
+          : best <= alpha0 ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+      table.store(key, depth, bound, toTable(best, ply),
+          BitBoard.transformMove(symmetry, bestMove));
+    }
+    return best;
+  }
+
+  /**
+   * score() searches the position after a move by color, for
+   * bestMoveHelper().
+   */
+  private static int score(int color, int depth, int ply, int alpha, int beta,
+      SearchContext context) {
+    return bestMoveHelper(invertColor(color), depth - 1, ply + 1, alpha, beta,
+        context);
+  }
+
+  /**
+   * tableKey() returns the transposition table key of a position: the hash
+   * of its canonical form, taken by the given symmetry, with the side to
+   * move. Scores are from AIcolor's point of view, so the key also covers
+   * the color AIcolor becomes on the canonical board; equivalent positions
+   * then share an entry only when their scores agree.
+   *
+   * @param board the position
+   * @param color the color to move
+   * @param AIcolor the color the scores are for
+   * @param symmetry board.canonicalSymmetry(color)
+   */
+  static long tableKey(BitBoard board, int color, int AIcolor, int symmetry) {
+    long key = board.symmetricHash(symmetry, color);
+    return BitBoard.transformColor(symmetry, AIcolor) == Board.WHITE ? ~key
+        : key;
+  }
+
+  /**
+   * toTable() converts a win or loss ply moves from the root into one
+   * counted from the position being stored, since the same position may
+   * be reached at another ply later; fromTable() converts back.
+   */
+  private static int toTable(int score, int ply) {
+    return isWin(score) ? score + ply : isLoss(score) ? score - ply : score;
   }
-  
+
+  private static int fromTable(int score, int ply) {
+    return isWin(score) ? score - ply : isLoss(score) ? score + ply : score;
+  }
+
   /**
    * Inverts a color. Ie. Black returns White, White returns Black, and Empty returns Empty
    * @param color The color that we want to invert
@@ -177,7 +696,7 @@ public class AI {
    * 
    * @author Alec Mouri
    */
-  private static int invertColor(int color){
+  static int invertColor(int color){
     if(color == Board.WHITE){
       return Board.BLACK;
 	} else if (color == Board.BLACK){
@@ -0,0 +1,1057 @@
+package ai;
+
+import java.util.Random;
+
+import list.AList;
+import list.List;
+import player.Move;
+
+/**
+ * A BitBoard is an alternate Board engine which stores each color as a 64-bit
+ * mask, one bit per square. Square (x, y) is bit x * 8 + y, so the board fits
+ * in a long exactly. Occupancy, goal and cluster checks become a few bitwise
+ * operations, and the public makeMove()/unmakeMove()/allValidMoves() contract
+ * is the same as Board's.
+ *
+ * Unlike Board, the position may only be changed through makeMove() and
+ * unmakeMove(). Use BitBoard(Board) to pick up a Board whose grid was set up
+ * by hand.
+ */
+public class BitBoard {
+
+  public final static int SIZE = Board.DEFAULT_BOARD_SIZE;
+  public final static int SQUARES = SIZE * SIZE;
+
+  /**
+   * The eight line-of-sight directions, in the order Board.connectedChips()
+   * scans them. Directions 0-3 step towards lower square indices and 4-7
+   * towards higher ones.
+   */
+  final static int[] DX = { -1, -1, -1, 0, 0, 1, 1, 1 };
+  final static int[] DY = { -1, 0, 1, -1, 1, -1, 0, 1 };
+  final static int NO_DIRECTION = -1;
+
+  final static long CORNERS;
+  // Goal areas, split into the low (x or y == 0) and high (== 7) halves.
+  final static long WHITE_GOAL_LOW, WHITE_GOAL_HIGH, WHITE_GOALS;
+  final static long BLACK_GOAL_LOW, BLACK_GOAL_HIGH, BLACK_GOALS;
+  // Squares a color may never occupy: the corners and the other color's goals.
+  final static long WHITE_FORBIDDEN, BLACK_FORBIDDEN;
+  // NEIGHBORS[s] holds the (up to) eight squares touching s.
+  final static long[] NEIGHBORS = new long[SQUARES];
+  // RAYS[d][s] holds every square reached from s by stepping in direction d.
+  final static long[][] RAYS = new long[DX.length][SQUARES];
+
+  /**
+   * Zobrist keys: hash() is the XOR of ZOBRIST[c][s] over every chip, where
+   * c is 0 for BLACK and 1 for WHITE. The seed is fixed so hashes are stable
+   * from run to run.
+   */
+  final static long[][] ZOBRIST = new long[2][SQUARES];
+  // XORed into a hash to mark WHITE as the side to move.
+  final static long WHITE_TO_MOVE;
+
+  // CENTRALITY[s] is |2x - 7| + |2y - 7| for square s = (x, y).
+  final static int[] CENTRALITY = new int[SQUARES];
+
+  /**
+   * The symmetries of the game, numbered 0 to SYMMETRIES - 1. Bit 0 of a
+   * symmetry mirrors x (x becomes 7 - x), bit 1 mirrors y, and bit 2 then
+   * swaps x with y and black with white. Either mirror maps each color's
+   * goals onto themselves; the transpose maps white's goals onto black's,
+   * which is why it must swap the colors too. Symmetry 0 is the identity.
+   */
+  public final static int SYMMETRIES = 8;
+  // SYMMETRY[t][s] is the square symmetry t takes square s to.
+  private final static int[][] SYMMETRY = new int[SYMMETRIES][SQUARES];
+  private final static int[] INVERSE = new int[SYMMETRIES];
+  // SYMMETRIC_ZOBRIST[t][c][s] is the key of a chip of color c on square s
+  // once symmetry t has moved it, i.e. ZOBRIST of its new color and square.
+  private final static long[][][] SYMMETRIC_ZOBRIST = new long[SYMMETRIES][2][SQUARES];
+
+  static {
+    Random random = new Random(61);
+    for (int c = 0; c < ZOBRIST.length; c++) {
+      for (int s = 0; s < SQUARES; s++) {
+        ZOBRIST[c][s] = random.nextLong();
+      }
+    }
+    WHITE_TO_MOVE = random.nextLong();
+    for (int s = 0; s < SQUARES; s++) {
+      CENTRALITY[s] = Math.abs(2 * (s / SIZE) - (SIZE - 1))
+          + Math.abs(2 * (s % SIZE) - (SIZE - 1));
+    }
+    for (int t = 0; t < SYMMETRIES; t++) {
+      for (int s = 0; s < SQUARES; s++) {
+        int x = s / SIZE, y = s % SIZE;
+        x = (t & 1) != 0 ? SIZE - 1 - x : x;
+        y = (t & 2) != 0 ? SIZE - 1 - y : y;
+        SYMMETRY[t][s] = (t & 4) != 0 ? square(y, x) : square(x, y);
+        for (int c = 0; c < 2; c++) {
+          SYMMETRIC_ZOBRIST[t][c][s] = ZOBRIST[(t & 4) != 0 ? 1 - c : c][SYMMETRY[t][s]];
+        }
+      }
+    }
+    // Square (0, 1) lands somewhere different under each symmetry, so the
+    // symmetry taking it back is the inverse.
+    for (int t = 0; t < SYMMETRIES; t++) {
+      for (int u = 0; u < SYMMETRIES; u++) {
+        if (SYMMETRY[u][SYMMETRY[t][1]] == 1) {
+          INVERSE[t] = u;
+        }
+      }
+    }
+  }
+
+  static {
+    long corners = 0, whiteLow = 0, whiteHigh = 0, blackLow = 0, blackHigh = 0;
+    int len = SIZE - 1;
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        int s = square(x, y);
+        long bit = 1L << s;
+        if (x % len == 0 && y % len == 0) {
+          corners |= bit;
+        }
+        else if (x == 0) {
+          whiteLow |= bit;
+        }
+        else if (x == len) {
+          whiteHigh |= bit;
+        }
+        else if (y == 0) {
+          blackLow |= bit;
+        }
+        else if (y == len) {
+          blackHigh |= bit;
+        }
+
+        for (int d = 0; d < DX.length; d++) {
+          int i = x + DX[d], j = y + DY[d];
+          if (inBounds(i, j)) {
+            NEIGHBORS[s] |= 1L << square(i, j);
+          }
+          while (inBounds(i, j)) {
+            RAYS[d][s] |= 1L << square(i, j);
+            i += DX[d];
+            j += DY[d];
+          }
+        }
+      }
+    }
+    CORNERS = corners;
+    WHITE_GOAL_LOW = whiteLow;
+    WHITE_GOAL_HIGH = whiteHigh;
+    WHITE_GOALS = whiteLow | whiteHigh;
+    BLACK_GOAL_LOW = blackLow;
+    BLACK_GOAL_HIGH = blackHigh;
+    BLACK_GOALS = blackLow | blackHigh;
+    WHITE_FORBIDDEN = corners | BLACK_GOALS;
+    BLACK_FORBIDDEN = corners | WHITE_GOALS;
+  }
+
+  private long black, white;
+
+  // Zobrist hash of the chips on the board.
+  private long hash;
+  // symmetricHashes[t] is the hash of the board as symmetry t would leave
+  // it; symmetricHashes[0] is hash.
+  private final long[] symmetricHashes = new long[SYMMETRIES];
+
+  /**
+   * The squares of each color's chips, kept sorted from high square to low
+   * (the order Board.locationOfPieces() lists them in). They are updated in
+   * place by makeMove() and unmakeMove(), so reading them never rescans the
+   * board or allocates. Games never exceed ten chips a side, but any position
+   * BitBoard(int[][]) accepts fits.
+   */
+  private final int[] blackChips = new int[SQUARES];
+  private final int[] whiteChips = new int[SQUARES];
+  private int blackCount, whiteCount;
+
+  /**
+   * Line-of-sight links between chips, kept up to date as chips are placed
+   * and lifted so that connections never have to be searched for. While
+   * square s is occupied, links[s * 8 + d] is the nearest chip (of either
+   * color) seen from s in direction d, or -1, and adjacent[s] is the mask of
+   * chips connected to s, i.e. linked to it and of the same color.
+   */
+  private final int[] links = new int[SQUARES * DX.length];
+  private final long[] adjacent = new long[SQUARES];
+
+  /**
+   * Neighbor counts for the cluster rule, also kept up to date by place()
+   * and lift(). touching[c][s] is the number of chips of color c (0 for
+   * black, 1 for white) on the squares around s, and touched[c][k] is the
+   * mask of squares with more than k such neighbors, for k = 0, 1, 2.
+   */
+  private final byte[][] touching = new byte[2][SQUARES];
+  private final long[][] touched = new long[2][3];
+
+  /**
+   * Running totals for AI.evaluate(), by color (0 for black, 1 for white):
+   * the sum of connectionCount() and of CENTRALITY over the color's chips.
+   */
+  private final int[] connectionTotals = new int[2];
+  private final int[] centralityTotals = new int[2];
+
+  // Path searches over one color's chips, for hasNetwork() and friends.
+  private final NetworkSearch paths = new NetworkSearch();
+
+  // Results of longestPathLength(), keyed by hash(color). A slot holds the
+  // length plus one, so 0 marks an empty slot.
+  private final static int LONGEST_CACHE_SIZE = 1 << 10;
+  private final long[] longestKeys = new long[LONGEST_CACHE_SIZE];
+  private final byte[] longestValues = new byte[LONGEST_CACHE_SIZE];
+
+  public BitBoard() {
+  }
+
+  /**
+   * Constructs a BitBoard holding the same position as the given Board.
+   *
+   * @param board a Board of the default size
+   */
+  public BitBoard(Board board) {
+    this(board.grid);
+  }
+
+  /**
+   * Constructs an independent copy of another BitBoard, e.g. for a search
+   * thread to make moves on.
+   */
+  public BitBoard(BitBoard other) {
+    black = other.black;
+    white = other.white;
+    hash = other.hash;
+    System.arraycopy(other.symmetricHashes, 0, symmetricHashes, 0, SYMMETRIES);
+    blackCount = other.blackCount;
+    whiteCount = other.whiteCount;
+    System.arraycopy(other.blackChips, 0, blackChips, 0, blackCount);
+    System.arraycopy(other.whiteChips, 0, whiteChips, 0, whiteCount);
+    System.arraycopy(other.links, 0, links, 0, links.length);
+    System.arraycopy(other.adjacent, 0, adjacent, 0, adjacent.length);
+    for (int c = 0; c < 2; c++) {
+      System.arraycopy(other.touching[c], 0, touching[c], 0, SQUARES);
+      System.arraycopy(other.touched[c], 0, touched[c], 0, 3);
+      connectionTotals[c] = other.connectionTotals[c];
+      centralityTotals[c] = other.centralityTotals[c];
+    }
+  }
+
+  public BitBoard(int[][] grid) {
+    if (grid.length != SIZE || grid[0].length != SIZE) {
+      throw new IllegalArgumentException("BitBoard only supports " + SIZE
+          + "x" + SIZE + " grids");
+    }
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        if (grid[x][y] == Board.BLACK || grid[x][y] == Board.WHITE) {
+          place(grid[x][y], square(x, y));
+          addChip(grid[x][y], square(x, y));
+        }
+      }
+    }
+  }
+
+  public static int square(int x, int y) {
+    return x * SIZE + y;
+  }
+
+  private static boolean inBounds(int x, int y) {
+    return x >= 0 && x < SIZE && y >= 0 && y < SIZE;
+  }
+
+  /**
+   * pieces() returns the mask of squares occupied by the given color.
+   *
+   * @param color BLACK or WHITE
+   * @return a mask with bit x * 8 + y set for each chip of that color
+   */
+  public long pieces(int color) {
+    return color == Board.WHITE ? white : black;
+  }
+
+  /**
+   * hash() returns the Zobrist hash of the chips on the board. It is kept up
+   * to date by makeMove() and unmakeMove(), so it costs nothing to read.
+   */
+  public long hash() {
+    return hash;
+  }
+
+  /**
+   * hash() returns the Zobrist hash of the position with the given color to
+   * move.
+   */
+  public long hash(int color) {
+    return color == Board.WHITE ? hash ^ WHITE_TO_MOVE : hash;
+  }
+
+  /**
+   * symmetricHash() returns the hash() of the board symmetry t would leave,
+   * without making it.
+   *
+   * @param t a symmetry, 0 to SYMMETRIES - 1
+   */
+  public long symmetricHash(int t) {
+    return symmetricHashes[t];
+  }
+
+  /**
+   * symmetricHash() returns the hash(int) of the position symmetry t would
+   * leave, in which transformColor(t, color) is to move.
+   *
+   * @param t a symmetry, 0 to SYMMETRIES - 1
+   * @param color the color to move before the symmetry is applied
+   */
+  public long symmetricHash(int t, int color) {
+    return transformColor(t, color) == Board.WHITE ? symmetricHashes[t]
+        ^ WHITE_TO_MOVE : symmetricHashes[t];
+  }
+
+  /**
+   * canonicalSymmetry() returns the symmetry that takes the board to its
+   * canonical form: the one of the (up to) eight equivalent boards with the
+   * smallest hash. Equivalent boards have the same canonical form, so
+   * tables keyed by canonicalHash() share their entries; a square or move
+   * read from such a table must be taken back to this board through the
+   * inverse() of this symmetry.
+   */
+  public int canonicalSymmetry() {
+    int best = 0;
+    for (int t = 1; t < SYMMETRIES; t++) {
+      if (symmetricHashes[t] < symmetricHashes[best]) {
+        best = t;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * canonicalSymmetry() is canonicalSymmetry() for the position with the
+   * given color to move, whose equivalents have the other color to move
+   * whenever the symmetry swaps the colors.
+   */
+  public int canonicalSymmetry(int color) {
+    int best = 0;
+    long min = symmetricHash(0, color);
+    for (int t = 1; t < SYMMETRIES; t++) {
+      long h = symmetricHash(t, color);
+      if (h < min) {
+        best = t;
+        min = h;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * canonicalHash() returns the hash of the board's canonical form, which
+   * is the same for every board equivalent to this one.
+   */
+  public long canonicalHash() {
+    return symmetricHashes[canonicalSymmetry()];
+  }
+
+  /**
+   * canonicalHash() returns the hash of the canonical form of the position
+   * with the given color to move.
+   */
+  public long canonicalHash(int color) {
+    return symmetricHash(canonicalSymmetry(color), color);
+  }
+
+  /**
+   * transform() returns the square symmetry t takes square s to.
+   */
+  public static int transform(int t, int s) {
+    return SYMMETRY[t][s];
+  }
+
+  /**
+   * transformMove() returns the packed move symmetry t takes a packed move
+   * to. NO_MOVE stays NO_MOVE.
+   */
+  public static int transformMove(int t, int move) {
+    if (move >>> 12 == Move.STEP) {
+      return Move.STEP << 12 | SYMMETRY[t][(move >>> 6) & 63] << 6
+          | SYMMETRY[t][move & 63];
+    }
+    if (move >>> 12 == Move.ADD) {
+      return Move.ADD << 12 | SYMMETRY[t][move & 63];
+    }
+    return move;
+  }
+
+  /**
+   * transformColor() returns the color symmetry t turns color into.
+   */
+  public static int transformColor(int t, int color) {
+    return (t & 4) != 0 ? -color : color;
+  }
+
+  /**
+   * inverse() returns the symmetry that undoes symmetry t.
+   */
+  public static int inverse(int t) {
+    return INVERSE[t];
+  }
+
+  /**
+   * chip() returns the square of one of color's chips. Chips are numbered
+   * from 0 to numberChips(color) - 1, high square first.
+   *
+   * @param color BLACK or WHITE
+   * @param i the chip number
+   * @return the square x * 8 + y of that chip
+   */
+  public int chip(int color, int i) {
+    return color == Board.WHITE ? whiteChips[i] : blackChips[i];
+  }
+
+  /**
+   * get() returns the color of the chip at (x, y), or EMPTY.
+   */
+  public int get(int x, int y) {
+    long bit = 1L << square(x, y);
+    if ((black & bit) != 0) {
+      return Board.BLACK;
+    }
+    else if ((white & bit) != 0) {
+      return Board.WHITE;
+    }
+    return Board.EMPTY;
+  }
+
+  /**
+   * Moves packed into an int, for the search to generate and play without
+   * allocating: the kind (Move.ADD or Move.STEP) in bits 12 and up, the
+   * square stepped from in bits 6-11 and the square moved to in bits 0-5.
+   * No packed move is 0, so 0 can stand for "no move".
+   */
+  public final static int NO_MOVE = 0;
+
+  /**
+   * The most moves generateMoves() can produce for a player with at most ten
+   * chips: ten chips times every square.
+   */
+  public final static int MAX_MOVES = 10 * SQUARES;
+
+  /**
+   * encode() packs a Move into an int.
+   */
+  public static int encode(Move move) {
+    if (move.moveKind == Move.STEP) {
+      return Move.STEP << 12 | square(move.x2, move.y2) << 6
+          | square(move.x1, move.y1);
+    }
+    return Move.ADD << 12 | square(move.x1, move.y1);
+  }
+
+  /**
+   * decode() turns a packed move back into a Move.
+   */
+  public static Move decode(int move) {
+    int to = move & 63;
+    if (move >>> 12 == Move.STEP) {
+      int from = (move >>> 6) & 63;
+      return new Move(to / SIZE, to % SIZE, from / SIZE, from % SIZE);
+    }
+    return new Move(to / SIZE, to % SIZE);
+  }
+
+  /**
+   * makeMove() tries to make the given move on this board.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param move the proposed move
+   * @return if the move was made (i.e. valid)
+   */
+  public boolean makeMove(int color, Move move) {
+    if (!isValid(color, move)) {
+      return false;
+    }
+    makeMove(color, encode(move));
+    return true;
+  }
+
+  /**
+   * makeMove() makes a packed move from generateMoves(). Unlike
+   * makeMove(int, Move) it does not check that the move is valid.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param move the packed move
+   */
+  public void makeMove(int color, int move) {
+    int to = move & 63;
+    if (move >>> 12 == Move.STEP) {
+      int from = (move >>> 6) & 63;
+      lift(color, from);
+      place(color, to);
+      moveChip(color, from, to);
+    }
+    else {
+      place(color, to);
+      addChip(color, to);
+    }
+  }
+
+  /**
+   * unmakeMove() does the opposite of the given move on this board.
+   * It presupposes that this is a valid action.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param move the move to take back
+   */
+  public void unmakeMove(int color, Move move) {
+    unmakeMove(color, encode(move));
+  }
+
+  /**
+   * unmakeMove() takes back a packed move made by makeMove(int, int).
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param move the packed move
+   */
+  public void unmakeMove(int color, int move) {
+    int to = move & 63;
+    lift(color, to);
+    if (move >>> 12 == Move.STEP) {
+      int from = (move >>> 6) & 63;
+      place(color, from);
+      moveChip(color, to, from);
+    }
+    else {
+      removeChip(color, to);
+    }
+  }
+
+  /**
+   * place() puts a chip of the given color on the empty square s, updating
+   * the masks, the hash and the links of every chip that can now see s.
+   */
+  private void place(int color, int s) {
+    long bit = 1L << s;
+    long own;
+    if (color == Board.WHITE) {
+      own = white |= bit;
+      hash ^= ZOBRIST[1][s];
+    }
+    else {
+      own = black |= bit;
+      hash ^= ZOBRIST[0][s];
+    }
+    int c = color == Board.WHITE ? 1 : 0;
+    for (int t = 0; t < SYMMETRIES; t++) {
+      symmetricHashes[t] ^= SYMMETRIC_ZOBRIST[t][c][s];
+    }
+    centralityTotals[c] += CENTRALITY[s];
+    byte[] counts = touching[c];
+    long[] more = touched[c];
+    for (long m = NEIGHBORS[s]; m != 0; m &= m - 1) {
+      int n = Long.numberOfTrailingZeros(m);
+      int k = counts[n]++;
+      if (k < 3) {
+        more[k] |= 1L << n;
+      }
+    }
+
+    long connected = 0;
+    for (int d = 0; d < 4; d++) {
+      int e = 7 - d; // the opposite direction
+      int a = neighbor(s, d), b = neighbor(s, e);
+      links[s * 8 + d] = a;
+      links[s * 8 + e] = b;
+      if (a >= 0 && b >= 0 && (adjacent[a] & (1L << b)) != 0) {
+        // s comes between two connected chips.
+        connectionTotals[(white >>> a & 1) == 0 ? 0 : 1] -= 2;
+      }
+      if (a >= 0) {
+        links[a * 8 + e] = s;
+        adjacent[a] &= b >= 0 ? ~(1L << b) : -1L;
+        if ((own & (1L << a)) != 0) {
+          adjacent[a] |= bit;
+          connected |= 1L << a;
+        }
+      }
+      if (b >= 0) {
+        links[b * 8 + d] = s;
+        adjacent[b] &= a >= 0 ? ~(1L << a) : -1L;
+        if ((own & (1L << b)) != 0) {
+          adjacent[b] |= bit;
+          connected |= 1L << b;
+        }
+      }
+    }
+    adjacent[s] = connected;
+    connectionTotals[c] += 2 * Long.bitCount(connected);
+  }
+
+  /**
+   * lift() takes the chip of the given color off square s, reconnecting the
+   * chips on either side of it that s used to block.
+   */
+  private void lift(int color, int s) {
+    long bit = 1L << s;
+    int c = color == Board.WHITE ? 1 : 0;
+    for (int t = 0; t < SYMMETRIES; t++) {
+      symmetricHashes[t] ^= SYMMETRIC_ZOBRIST[t][c][s];
+    }
+    connectionTotals[c] -= 2 * Long.bitCount(adjacent[s]);
+    centralityTotals[c] -= CENTRALITY[s];
+    for (int d = 0; d < 4; d++) {
+      int e = 7 - d;
+      int a = links[s * 8 + d], b = links[s * 8 + e];
+      if (a >= 0) {
+        links[a * 8 + e] = b;
+        adjacent[a] &= ~bit;
+      }
+      if (b >= 0) {
+        links[b * 8 + d] = a;
+        adjacent[b] &= ~bit;
+      }
+      if (a >= 0 && b >= 0
+          && ((black >>> a & 1) == (black >>> b & 1))) {
+        adjacent[a] |= 1L << b;
+        adjacent[b] |= 1L << a;
+        connectionTotals[(white >>> a & 1) == 0 ? 0 : 1] += 2;
+      }
+    }
+    adjacent[s] = 0;
+    if (color == Board.WHITE) {
+      white &= ~bit;
+      hash ^= ZOBRIST[1][s];
+    }
+    else {
+      black &= ~bit;
+      hash ^= ZOBRIST[0][s];
+    }
+    byte[] counts = touching[c];
+    long[] more = touched[c];
+    for (long m = NEIGHBORS[s]; m != 0; m &= m - 1) {
+      int n = Long.numberOfTrailingZeros(m);
+      int k = --counts[n];
+      if (k < 3) {
+        more[k] &= ~(1L << n);
+      }
+    }
+  }
+
+  /**
+   * addChip() inserts square s into color's chip list, keeping it sorted.
+   */
+  private void addChip(int color, int s) {
+    int[] chips = color == Board.WHITE ? whiteChips : blackChips;
+    int i = color == Board.WHITE ? whiteCount++ : blackCount++;
+    for (; i > 0 && chips[i - 1] < s; i--) {
+      chips[i] = chips[i - 1];
+    }
+    chips[i] = s;
+  }
+
+  /**
+   * removeChip() deletes square s from color's chip list.
+   */
+  private void removeChip(int color, int s) {
+    int[] chips = color == Board.WHITE ? whiteChips : blackChips;
+    int count = color == Board.WHITE ? --whiteCount : --blackCount;
+    int i = 0;
+    while (chips[i] != s) {
+      i++;
+    }
+    for (; i < count; i++) {
+      chips[i] = chips[i + 1];
+    }
+  }
+
+  /**
+   * moveChip() relocates color's chip from square from to square to,
+   * sliding only the entries between its old and new place in the list.
+   */
+  private void moveChip(int color, int from, int to) {
+    int[] chips = color == Board.WHITE ? whiteChips : blackChips;
+    int i = 0;
+    while (chips[i] != from) {
+      i++;
+    }
+    int count = color == Board.WHITE ? whiteCount : blackCount;
+    for (; i + 1 < count && chips[i + 1] > to; i++) {
+      chips[i] = chips[i + 1];
+    }
+    for (; i > 0 && chips[i - 1] < to; i--) {
+      chips[i] = chips[i - 1];
+    }
+    chips[i] = to;
+  }
+
+  /**
+   * isValid() determines if a given move for a given player on this board
+   * is valid.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param move the proposed move
+   * @return if the proposed move is valid
+   */
+  public boolean isValid(int color, Move move) {
+    if (move.moveKind != Move.ADD && move.moveKind != Move.STEP) {
+      return false;
+    }
+    if (!inBounds(move.x1, move.y1)) {
+      return false;
+    }
+    long own = pieces(color);
+
+    //If less than 10 moves in game, cannot make step moves. Otherwise cannot make add moves.
+    int chips = Long.bitCount(own);
+    if ((move.moveKind == Move.STEP && chips < 10)
+        || (move.moveKind == Move.ADD && chips >= 10)) {
+      return false;
+    }
+
+    int to = square(move.x1, move.y1);
+    long toBit = 1L << to;
+    long forbidden = color == Board.WHITE ? WHITE_FORBIDDEN : BLACK_FORBIDDEN;
+    if (((forbidden | black | white) & toBit) != 0) {
+      return false;
+    }
+
+    int from = -1;
+    if (move.moveKind == Move.STEP) {
+      //Can only step a chip of our own color
+      if (!inBounds(move.x2, move.y2)) {
+        return false;
+      }
+      from = square(move.x2, move.y2);
+      if ((own & (1L << from)) == 0) {
+        return false;
+      }
+    }
+
+    return (clusterSquares(color, from) & toBit) == 0;
+  }
+
+  public int numberChips(int color) {
+    return color == Board.WHITE ? whiteCount : blackCount;
+  }
+
+  /**
+   * locationOfPieces() returns a list of all the given pieces of
+   * a player, in the same order as Board.locationOfPieces().
+   *
+   * @param color the color of the pieces of the player
+   * @return a list of the location of the pieces, as int[] {x, y}
+   */
+  public List locationOfPieces(int color) {
+    AList listed = new AList(numberChips(color));
+    for (int i = 0; i < numberChips(color); i++) {
+      int s = chip(color, i);
+      listed.insertBack(new int[] { s / SIZE, s % SIZE });
+    }
+    return listed;
+  }
+
+  /**
+   * allValidMoves() creates a list of all valid Moves for a given board and
+   * player, in the same order as Board.allValidMoves().
+   *
+   * @param color the turn of the current player (determined by color)
+   * @return a List of Moves
+   */
+  public List allValidMoves(int color) {
+    int[] moves = new int[Math.max(numberChips(color), 1) * SQUARES];
+    int count = generateMoves(color, moves);
+    AList validList = new AList(count);
+    for (int i = 0; i < count; i++) {
+      validList.insertBack(decode(moves[i]));
+    }
+    return validList;
+  }
+
+  /**
+   * generateMoves() writes every valid move for the given player into moves,
+   * packed as described at NO_MOVE and in allValidMoves() order. It
+   * allocates nothing, so the search can give each ply a buffer of its own
+   * and reuse it at every node.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param moves the buffer to fill; MAX_MOVES entries are enough unless
+   *          the player has more than ten chips
+   * @return the number of moves written
+   */
+  public int generateMoves(int color, int[] moves) {
+    long own = pieces(color);
+    long open = ~((color == Board.WHITE ? WHITE_FORBIDDEN : BLACK_FORBIDDEN)
+        | black | white);
+    int count = 0;
+    if (Long.bitCount(own) <= 9) {
+      for (long m = open & ~clusterSquares(color, -1); m != 0; m &= m - 1) {
+        moves[count++] = Move.ADD << 12 | Long.numberOfTrailingZeros(m);
+      }
+    }
+    else {
+      for (int i = 0; i < numberChips(color); i++) {
+        int from = chip(color, i);
+        long targets = open & ~clusterSquares(color, from);
+        for (long m = targets; m != 0; m &= m - 1) {
+          moves[count++] = Move.STEP << 12 | from << 6
+              | Long.numberOfTrailingZeros(m);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * countMoves() returns how many moves generateMoves() would produce,
+   * without producing them.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @return the number of valid moves
+   */
+  public int countMoves(int color) {
+    long own = pieces(color);
+    long open = ~((color == Board.WHITE ? WHITE_FORBIDDEN : BLACK_FORBIDDEN)
+        | black | white);
+    if (Long.bitCount(own) <= 9) {
+      return Long.bitCount(open & ~clusterSquares(color, -1));
+    }
+    int count = 0;
+    for (int i = 0; i < numberChips(color); i++) {
+      count += Long.bitCount(open & ~clusterSquares(color, chip(color, i)));
+    }
+    return count;
+  }
+
+  /**
+   * clusterSquares() returns every square on which a new chip of the given
+   * color would connect three or more of its chips into one group of
+   * adjacent chips: squares next to two of its chips, and squares next to a
+   * chip which already has a neighbor. Both come straight from the neighbor
+   * counts, so the only loop is over chips that already have a neighbor.
+   *
+   * @param color the color of the chip being placed
+   * @param from the square a stepping chip leaves, or -1 for an add move
+   * @return the mask of squares the chip may not move to
+   */
+  private long clusterSquares(int color, int from) {
+    long own = pieces(color);
+    long[] more = touched[color == Board.WHITE ? 1 : 0];
+    long once = more[0], twice = more[1];
+    if (from >= 0) {
+      // Every square around from loses one neighbor.
+      long around = NEIGHBORS[from];
+      own &= ~(1L << from);
+      once = once & ~around | more[1] & around;
+      twice = twice & ~around | more[2] & around;
+    }
+    long crowded = 0;
+    for (long m = own & once; m != 0; m &= m - 1) {
+      crowded |= NEIGHBORS[Long.numberOfTrailingZeros(m)];
+    }
+    return twice | crowded;
+  }
+
+  /**
+   * neighbor() finds the first chip of either color seen from square s when
+   * looking in direction d.
+   *
+   * @return the square of that chip, or -1 if the line of sight is empty
+   */
+  int neighbor(int s, int d) {
+    long hits = RAYS[d][s] & (black | white);
+    if (hits == 0) {
+      return -1;
+    }
+    return d < 4 ? 63 - Long.numberOfLeadingZeros(hits) : Long
+        .numberOfTrailingZeros(hits);
+  }
+
+  /**
+   * connections() returns the mask of chips connected to the chip on square
+   * s, or 0 if s is empty. It reads the links kept by makeMove(), so it costs
+   * nothing.
+   */
+  public long connections(int s) {
+    return adjacent[s];
+  }
+
+  /**
+   * link() returns the nearest chip seen from the chip on square s in
+   * direction d, or -1.
+   */
+  int link(int s, int d) {
+    return links[s * 8 + d];
+  }
+
+  /**
+   * connectionCount() counts the chips connected to the chip on square s,
+   * i.e. connectedChips().length() without building the list.
+   */
+  public int connectionCount(int s) {
+    return Long.bitCount(adjacent[s]);
+  }
+
+  /**
+   * connectionTotal() returns the sum of connectionCount() over all of
+   * color's chips, i.e. twice the number of connected pairs. It is kept up
+   * to date by makeMove() and unmakeMove(), so it costs nothing to read.
+   */
+  public int connectionTotal(int color) {
+    return connectionTotals[color == Board.WHITE ? 1 : 0];
+  }
+
+  /**
+   * centralityTotal() returns the sum over color's chips of
+   * |2x - 7| + |2y - 7|, i.e. four times their total distance from the
+   * center along each axis. Like connectionTotal() it is kept up to date.
+   */
+  public int centralityTotal(int color) {
+    return centralityTotals[color == Board.WHITE ? 1 : 0];
+  }
+
+  /**
+   * connectedChips() creates a list of all chips which are connected to a
+   * given chip on the board. Chips are represented by an int array of length
+   * 2, in the form of {x, y}. If there is no chip at that location, return
+   * an empty List.
+   *
+   * @param chip the position of the chip to check for connections
+   * @return a List of int arrays of chip positions
+   */
+  public List connectedChips(int[] chip) {
+    List connectedChips = new AList();
+    if (!inBounds(chip[0], chip[1])) {
+      return connectedChips;
+    }
+    int s = square(chip[0], chip[1]);
+    long bit = 1L << s;
+    if (((black | white) & bit) == 0) {
+      return connectedChips;
+    }
+    for (int d = 0; d < DX.length; d++) {
+      int t = links[s * 8 + d];
+      if (t >= 0 && (adjacent[s] & (1L << t)) != 0) {
+        connectedChips.insertBack(new int[] { t / SIZE, t % SIZE });
+      }
+    }
+    return connectedChips;
+  }
+
+  static long goals(int color) {
+    return color == Board.WHITE ? WHITE_GOALS : BLACK_GOALS;
+  }
+
+  static long lowGoal(int color) {
+    return color == Board.WHITE ? WHITE_GOAL_LOW : BLACK_GOAL_LOW;
+  }
+
+  static long highGoal(int color) {
+    return color == Board.WHITE ? WHITE_GOAL_HIGH : BLACK_GOAL_HIGH;
+  }
+
+  /**
+   * hasNetwork() checks to see if a board contains a winning network for a
+   * given player.
+   *
+   * Most positions are rejected without a path search: a network needs six
+   * chips, a chip in each goal, and the far goal must be reachable from the
+   * near one through connections between non-goal chips.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @return if there is a valid network
+   */
+  public boolean hasNetwork(int color) {
+    long own = pieces(color);
+    long low = own & lowGoal(color), high = own & highGoal(color);
+    if (low == 0 || high == 0 || numberChips(color) < 6) {
+      return false;
+    }
+
+    // Flood out from the near goal, passing only through non-goal chips.
+    long inner = own & ~goals(color);
+    long reached = low, frontier = low;
+    while (frontier != 0 && (reached & high) == 0) {
+      long next = 0;
+      for (long f = frontier; f != 0; f &= f - 1) {
+        next |= adjacent[Long.numberOfTrailingZeros(f)];
+      }
+      next &= ~reached;
+      reached |= next;
+      frontier = next & inner;
+    }
+    if ((reached & high) == 0) {
+      return false;
+    }
+
+    paths.load(this, color);
+    return paths.findNetwork();
+  }
+
+  /**
+   * networkPath() returns the chips of one of color's networks, in order
+   * from one goal to the other, as int arrays of the form {x, y}. It is
+   * meant for diagnostics; the search only needs hasNetwork().
+   *
+   * @param color the color of the network
+   * @return a List of chip positions, or an empty List if there is no network
+   */
+  public List networkPath(int color) {
+    AList network = new AList();
+    if (hasNetwork(color)) {
+      for (int i = 0; i < paths.pathLength(); i++) {
+        int s = paths.pathSquare(i);
+        network.insertBack(new int[] { s / SIZE, s % SIZE });
+      }
+    }
+    return network;
+  }
+
+  /**
+   * Utility function for finding the longest path length for a given color.
+   * Returns the same value as Board.longestPathLength(). Results are
+   * remembered by position, so asking again after returning to a position
+   * costs a table lookup.
+   *
+   * @param color
+   * @return length of the longest path for a given color on the board.
+   */
+  public int longestPathLength(int color) {
+    long key = hash(color);
+    int slot = (int) key & (LONGEST_CACHE_SIZE - 1);
+    if (longestKeys[slot] == key && longestValues[slot] != 0) {
+      return longestValues[slot] - 1;
+    }
+    paths.load(this, color);
+    int length = paths.longestPath();
+    longestKeys[slot] = key;
+    longestValues[slot] = (byte) (length + 1);
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(" ");
+    for (int i = 0; i < SIZE; i++) {
+      result.append(" " + i);
+    }
+    for (int i = 0; i < SIZE; i++) {
+      result.append("\n" + i);
+      for (int j = 0; j < SIZE; j++) {
+        switch (get(j, i)) {
+        case Board.BLACK:
+          result.append(" B");
+          break;
+        case Board.WHITE:
+          result.append(" W");
+          break;
+        default:
+          result.append(" .");
+          break;
+        }
+      }
+    }
+    return result.toString();
+  }
+
+}
@@ -1,8 +1,7 @@
 package ai;
 
-import list.DList;
-import list.InvalidNodeException;
-
+import list.AList;
+import list.IntList;
 import list.List;
 import player.Move;
 
@@ -15,7 +14,13 @@ public class Board {
     N, E, S, W, NE, SE, SW, NW, NONE
   }
 
-  private List blackChips, whiteChips;
+  // ownNeighbor() results besides a square.
+  private final static int NONE = -1, MANY = -2;
+
+  // The squares of each color's chips, numbered as by square(), and the
+  // same as int[] {x, y} for locationOfPieces(); null until needed.
+  private IntList blackSquares, whiteSquares;
+  private AList blackChips, whiteChips;
 
   public int[][] grid;
 
@@ -73,6 +78,8 @@ public class Board {
     }
 
     // Reset the memoized lists. These will be recalculated when needed.
+    blackSquares = null;
+    whiteSquares = null;
     blackChips = null;
     whiteChips = null;
   }
@@ -120,7 +127,6 @@ public class Board {
     int x = move.x1;
     int y = move.y1;
     int len = grid.length - 1;
-    int adjacent = 0;
 
     //If less than 10 moves in game, cannot make step moves. Otherwise cannot make add moves.
     if ((move.moveKind == Move.STEP && numberChips(color) < 10)
@@ -153,58 +159,101 @@ public class Board {
       if (grid[oldX][oldY] == EMPTY) {
         return false;
       }
-      grid[oldX][oldY] = EMPTY;
     }
-    //Groups of more than two chips of the same color are not allowed.
-    //Naive implementation since depth of search is at most 2
-    //Note: can probably be optimized.
-    for (int i = x - 1; i <= x + 1; i++) {
-      for (int j = y - 1; j <= y + 1; j++) {
-
-        //Do not consider case of nonexistent adjacent square and the square we want to make sure that is valid
-        if (i < 0 || i > len || j < 0 || j > len || (i == x && j == y)) {
-          continue;
-        }
-        //If an adjacent chip of the same color is found then check chips adjacent to those
-        if (!(i == x && j == y) && grid[i][j] == color) {
-          adjacent += 1;
-          //If two adjacent pieces, then move is not valid
-          if (adjacent == 2) {
-            if (move.moveKind == Move.STEP) {
-              grid[oldX][oldY] = color;
-            }
-            return false;
-          }
-          for (int k = i - 1; k <= i + 1; k++) {
-            for (int l = j - 1; l <= j + 1; l++) {
-              //Do not consider case of nonexistent adjacent square and coordinates of
-              //proposed move.
-              if (k < 0 || k > len || l < 0 || l > len || (k == i && l == j)) {
-                continue;
-              }
-
-              //If a chip of the same color is found then move is illegal
-              if (grid[k][l] == color) {
-                if (move.moveKind == Move.STEP) {
-                  grid[oldX][oldY] = color;
-                }
-                return false;
-              }
-            }
-          }
-        }
-      }
+    //Groups of more than two chips of the same color are not allowed, so
+    //the new chip may touch at most one chip of its color, and that one may
+    //not touch any other. A stepping chip no longer counts where it was.
+    int from = move.moveKind == Move.STEP ? square(oldX, oldY) : -1;
+    int adjacent = ownNeighbor(color, square(x, y), from);
+    if (adjacent == MANY) {
+      return false;
     }
-    if (move.moveKind == Move.STEP) {
-      grid[oldX][oldY] = color;
+    if (adjacent != NONE && ownNeighbor(color, adjacent, from) != NONE) {
+      return false;
     }
 
     //All rules are satisfied so return true
     return true;
   }
   
+  /**
+   * ownNeighbor() finds the chip of the given color touching square s.
+   * 
+   * @param color the color of the chips to look for
+   * @param s the square, numbered as by square()
+   * @param skip a square to treat as empty, or -1
+   * @return the square of that chip, NONE if there is none, or MANY if
+   *         there is more than one
+   */
+  private int ownNeighbor(int color, int s, int skip) {
+    int x0 = x(s), y0 = y(s);
+    int found = NONE;
+    for (int x = x0 - 1; x <= x0 + 1; x++) {
+      for (int y = y0 - 1; y <= y0 + 1; y++) {
+        int n = square(x, y);
+        if (inBounds(x, y) && n != s && n != skip && grid[x][y] == color) {
+          if (found != NONE) {
+            return MANY;
+          }
+          found = n;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * square() numbers the square (x, y) of this board's grid, row by row, so
+   * a chip can be kept as one int. On the standard 8x8 board the numbers
+   * are those of BitBoard.square().
+   */
+  private int square(int x, int y) {
+    return x * grid[0].length + y;
+  }
+
+  private int x(int s) {
+    return s / grid[0].length;
+  }
+
+  private int y(int s) {
+    return s % grid[0].length;
+  }
+
   private int numberChips(int color) {
-    return locationOfPieces(color).length();
+    return squares(color).size();
+  }
+
+  /**
+   * squares() returns the squares of all the given pieces of a player,
+   * numbered as by square(), in locationOfPieces() order.
+   * 
+   * @param color the color of the pieces of the player
+   * @return the squares of the pieces
+   */
+  private IntList squares(int color) {
+    // If the list was already calculated, use that.
+    IntList rightList = color == WHITE ? whiteSquares : blackSquares;
+    if (rightList != null) {
+      return rightList;
+    }
+
+    // Otherwise, calculate the list and save it.
+    IntList listed = new IntList(10);
+    for (int x = grid.length - 1; x >= 0; x--) {
+      for (int y = grid[0].length - 1; y >= 0; y--) {
+        if (grid[x][y] == color) {
+          listed.add(square(x, y));
+        }
+      }
+    }
+
+    if (color == WHITE) {
+      whiteSquares = listed;
+    }
+    else {
+      blackSquares = listed;
+    }
+    return listed;
   }
 
   /**
@@ -218,19 +267,16 @@ public class Board {
    */
 public List locationOfPieces(int color) {
     // If the list was already calculated, use that.
-    List rightList = color == WHITE ? whiteChips : blackChips;
+    AList rightList = color == WHITE ? whiteChips : blackChips;
     if (rightList != null) {
       return rightList;
     }
 
-    // Otherwise, calculate the list and save it.
-    DList listed = new DList();
-    for (int x = 0; x < grid.length; x++) {
-      for (int y = 0; y < grid[0].length; y++) {
-        if (grid[x][y] == color) {
-          listed.insertFront(new int[] { x, y });
-        }
-      }
+    // Otherwise, build the list from the squares and save it.
+    IntList squares = squares(color);
+    AList listed = new AList(squares.size());
+    for (int i = 0; i < squares.size(); i++) {
+      listed.insertBack(chip(squares.get(i)));
     }
 
     if (color == WHITE) {
@@ -242,6 +288,10 @@ public List locationOfPieces(int color) {
     return listed;
   }
 
+  private int[] chip(int s) {
+    return new int[] { x(s), y(s) };
+  }
+
   /**
    * allValidMoves() creates a list of all valid Moves for a given board and
    * player.
@@ -252,10 +302,10 @@ public List locationOfPieces(int color) {
    * @author Michael Liu
    */
   public List allValidMoves(int color) {
-    DList validList = new DList();
-    List pieces = locationOfPieces(color);
+    AList validList = new AList();
+    IntList pieces = squares(color);
     //differentiates adding and moving pieces
-    if (pieces.length() <= 9) {
+    if (pieces.size() <= 9) {
       //iterating through both dimensions of the board
       for (int i = 0; i < grid.length; i++) {
         for (int j = 0; j < grid[0].length; j++) {
@@ -267,10 +317,12 @@ public List locationOfPieces(int color) {
       }
     }
     else {
-      for (Object o : pieces) {
+      for (int k = 0; k < pieces.size(); k++) {
+        int x = x(pieces.get(k));
+        int y = y(pieces.get(k));
         for (int i = 0; i < grid.length; i++) {
           for (int j = 0; j < grid[0].length; j++) {
-            Move m = new Move(i, j, ((int[]) o)[0], ((int[]) o)[1]);
+            Move m = new Move(i, j, x, y);
             if (isValid(color, m)) {
               validList.insertBack(m);
             }
@@ -295,10 +347,27 @@ public List locationOfPieces(int color) {
   public List connectedChips(int[] chip) {
     int x0 = chip[0], y0 = chip[1];
     if (!inBounds(x0, y0) || grid[x0][y0] == EMPTY) {
-      return new DList();
+      return new AList();
     }
 
-    List connectedChips = new DList();
+    IntList squares = new IntList();
+    connected(square(x0, y0), squares);
+    AList connectedChips = new AList(squares.size());
+    for (int i = 0; i < squares.size(); i++) {
+      connectedChips.insertBack(chip(squares.get(i)));
+    }
+    return connectedChips;
+  }
+
+  /**
+   * connected() appends the squares of the chips connected to the chip on
+   * square s to a list, in connectedChips() order.
+   * 
+   * @param s the square of the chip, which must not be empty
+   * @param into the list to append to
+   */
+  private void connected(int s, IntList into) {
+    int x0 = x(s), y0 = y(s);
     // i and j form offsets for each of the 8 directions
     for (int i = -1; i <= 1; i++) {
       for (int j = -1; j <= 1; j++) {
@@ -312,12 +381,11 @@ public List locationOfPieces(int color) {
           }
           // Add to the list if it's the same color as the original
           if (inBounds(x, y) && grid[x][y] == grid[x0][y0]) {
-            connectedChips.insertBack(new int[] { x, y });
+            into.add(square(x, y));
           }
         }
       }
     }
-    return connectedChips;
   }
 
   private boolean inBounds(int x, int y) {
@@ -335,16 +403,16 @@ public List locationOfPieces(int color) {
    * @author Alec Mouri
    */
   public boolean hasNetwork(int color) {
-    List pieces = locationOfPieces(color);
-    for (Object curr : pieces) {
-      int[] c = (int[]) curr;
+    IntList pieces = squares(color);
+    IntList network = new IntList(10), stack = new IntList(16);
+    for (int i = 0; i < pieces.size(); i++) {
+      int c = pieces.get(i);
       //disregard initial path that is not in goal area
-      if ((color == WHITE && c[0] % (grid.length - 1) == 0)
-          || (color == BLACK && c[1] % (grid.length - 1) == 0)) {
+      if (inGoal(color, c)) {
         //memoized list
-        List network = new DList();
-        network.insertBack(c);
-        if (hasNetworkHelper(network, c, color, Direction.NONE)) {
+        network.clear();
+        network.add(c);
+        if (hasNetworkHelper(network, stack, c, color, Direction.NONE)) {
           return true;
         }
       }
@@ -357,54 +425,43 @@ public List locationOfPieces(int color) {
    * search to check all possible candidate networks until a valid one is found.
    * 
    * @param memo the memoized list of previous chips in the network
-   * @param pos the position of the latest chip in the network
+   * @param stack the chips connected to each chip of memo but the last, to
+   *        which this call appends those connected to pos and then removes
+   *        them
+   * @param pos the square of the latest chip in the network
    * @param color the color of the network we are detecting the network for
-   * @param board the current state of the board
    * @param dir the previous direction that was searched for
    * @return whether a network of a color exists that starts from pos
    * 
    * @author Alec Mouri
    */
-  private boolean hasNetworkHelper(List memo, int[] pos, int color,
-      Direction dir) {
-    int len = grid.length - 1;
-
-    List chips = connectedChips(pos);
-    try {
-      //If network length is at least 6 and network begins and ends at opposite goals
-      if (memo.length() >= 6
-          && ((color == WHITE && pos[0] % len == 0 && pos[0] != ((int[]) memo
-              .front().item())[0]) || (color == BLACK && pos[1] % len == 0 && pos[1] != ((int[]) memo
-              .front().item())[1]))) {
-        return true;
-      }
-      else if (memo.length() != 1
-          && ((color == WHITE && pos[0] % len == 0) || (color == BLACK && pos[1]
-              % len == 0))) {
-        return false;
-      }
-    } catch (InvalidNodeException e) {
-      //do nothing
+  private boolean hasNetworkHelper(IntList memo, IntList stack, int pos,
+      int color, Direction dir) {
+    //If network length is at least 6 and network begins and ends at opposite goals
+    if (memo.size() >= 6 && inGoal(color, pos)
+        && !inSameGoal(color, memo.get(0), pos)) {
+      return true;
+    }
+    else if (memo.size() != 1 && inGoal(color, pos)) {
+      return false;
     }
 
     //iterate over all chips connected to current chip
-    for (Object curr : chips) {
-      int[] c = (int[]) curr;
+    int from = stack.size();
+    connected(pos, stack);
+    int to = stack.size();
+    for (int i = from; i < to; i++) {
+      int c = stack.get(i);
       Direction newDir = getDirection(pos, c);
-      if (dir != newDir && !inNetwork(memo, c)) {
-        memo.insertBack(c);
-        if (hasNetworkHelper(memo, c, color, newDir)) {
+      if (dir != newDir && !memo.contains(c)) {
+        memo.add(c);
+        if (hasNetworkHelper(memo, stack, c, color, newDir)) {
           return true;
         }
-        else {
-          try {
-            memo.back().remove();
-          } catch (InvalidNodeException e) {
-
-          }
-        }
+        memo.removeBack();
       }
     }
+    stack.truncate(from);
 
     //No possible connections found, return false;
     return false;
@@ -413,32 +470,34 @@ public List locationOfPieces(int color) {
   /**
    * Helper function for hasNetworkHelper() for determining the direction that the path takes when going from
    * one point to another.
-   * @param pos A starting point on the path.
-   * @param newPos An ending point on the path
+   * @param pos The square of a starting point on the path.
+   * @param newPos The square of an ending point on the path
    * @return A direction that corresponds to the direction of the path from pos to newPos
    * 
    * @author Alec Mouri
    */
-  private static Direction getDirection(int[] pos, int[] newPos) {
-    if (pos[0] > newPos[0] && pos[1] < newPos[1]) {
+  private Direction getDirection(int pos, int newPos) {
+    int x = x(pos), y = y(pos);
+    int newX = x(newPos), newY = y(newPos);
+    if (x > newX && y < newY) {
       return Direction.SW;
     }
-    else if (pos[0] < newPos[0] && pos[1] < newPos[1]) {
+    else if (x < newX && y < newY) {
       return Direction.SE;
     }
-    else if (pos[0] < newPos[0] && pos[1] > newPos[1]) {
+    else if (x < newX && y > newY) {
       return Direction.NE;
     }
-    else if (pos[0] > newPos[0] && pos[1] > newPos[1]) {
+    else if (x > newX && y > newY) {
       return Direction.NW;
     }
-    else if (pos[0] > newPos[0]) {
+    else if (x > newX) {
       return Direction.W;
     }
-    else if (pos[0] < newPos[0]) {
+    else if (x < newX) {
       return Direction.E;
     }
-    else if (pos[1] < newPos[1]) {
+    else if (y < newY) {
       return Direction.S;
     }
     else {
@@ -446,18 +505,10 @@ public List locationOfPieces(int color) {
     }
   }
 
-  private static boolean inNetwork(List memo, int[] pos) {
-    for (Object o : memo) {
-      int[] curr = (int[]) o;
-      if (pos[0] == curr[0] && pos[1] == curr[1]) {
-        return true;
-      }
-    }
-    return false;
-  }
-  
   /**
    * Utility function for finding the longest path length for a given color. Used by AI.
+   * Paths follow the same rules as networks: no chip twice, no two steps in the same
+   * direction in a row, and no more than one chip in each goal, at an end of the path.
    * @param color
    * @return length of the longest path for a given color on the board.
    * 
@@ -465,13 +516,15 @@ public List locationOfPieces(int color) {
    */
   public int longestPathLength(int color) {
     int length = 0;
-    List pieces = locationOfPieces(color);
-    for (Object curr : pieces) {
-      int[] c = (int[]) curr;
-      List network = new DList();
-      network.insertBack(c);
+    IntList pieces = squares(color);
+    IntList network = new IntList(10), stack = new IntList(16);
+    for (int i = 0; i < pieces.size(); i++) {
+      int c = pieces.get(i);
+      network.clear();
+      network.add(c);
       length = Math.max(
-          longestPathLengthHelper(network, c, color, Direction.NONE), length);
+          longestPathLengthHelper(network, stack, c, color, Direction.NONE),
+          length);
     }
     return length;
   }
@@ -479,33 +532,56 @@ public List locationOfPieces(int color) {
   /**
    * Helper function for longestPathLength() that finds all possible paths from a piece and
    * returns the maximum length of those paths.
-   * @param memo A list of pieces that grows as the function is repeatedly called
-   * @param pos The piece that we are considering
+   * @param memo The pieces on the path so far; restored before returning
+   * @param stack The pieces connected to those on the path, as for
+   *        hasNetworkHelper(); restored before returning
+   * @param pos The square of the piece that we are considering
    * @param color The color of the piece
    * @param dir The direction from which we arrived at the piece
    * @return The longest path length that has pos as its root
    * 
    * @author Alec Mouri
    */
-  private int longestPathLengthHelper(List memo, int[] pos, int color,
-      Direction dir) {
-    int pathLength = memo.length();
+  private int longestPathLengthHelper(IntList memo, IntList stack, int pos,
+      int color, Direction dir) {
+    int pathLength = memo.size();
+
+    //A goal chip can only end a path, not sit in its middle
+    if (memo.size() != 1 && inGoal(color, pos)) {
+      return pathLength;
+    }
 
-    List chips = connectedChips(pos);
+    int start = memo.get(0);
+    int from = stack.size();
+    connected(pos, stack);
+    int to = stack.size();
 
     //iterate over all chips connected to current chip
-    for (Object curr : chips) {
-      int[] c = (int[]) curr;
+    for (int i = from; i < to; i++) {
+      int c = stack.get(i);
       Direction newDir = getDirection(pos, c);
-      if (dir != newDir && !inNetwork(memo, c)) {
-        memo.insertBack(c);
-        pathLength = Math.max(longestPathLengthHelper(memo, c, color, newDir),
+      if (dir != newDir && !memo.contains(c) && !inSameGoal(color, start, c)) {
+        memo.add(c);
+        pathLength = Math.max(
+            longestPathLengthHelper(memo, stack, c, color, newDir),
             pathLength);
+        memo.removeBack();
       }
     }
+    stack.truncate(from);
 
     //No possible connections found, return length of memoized list;
     return pathLength;
   }
 
+  private boolean inGoal(int color, int pos) {
+    int len = grid.length - 1;
+    return color == WHITE ? x(pos) % len == 0 : y(pos) % len == 0;
+  }
+
+  private boolean inSameGoal(int color, int a, int b) {
+    int axis = color == WHITE ? x(a) - x(b) : y(a) - y(b);
+    return inGoal(color, a) && axis == 0;
+  }
+
 }
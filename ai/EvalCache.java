@@ -0,0 +1,117 @@
+package ai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An EvalCache remembers AI.positional() scores of positions without a
+ * network, keyed by BitBoard.canonicalHash(), so the search need not
+ * evaluate a position again when it reaches it (or a mirror image of it) by
+ * another move order, in a sibling branch or in a later iteration or move.
+ * It has a fixed, power-of-two
+ * number of slots, each hash maps to exactly one, and a new entry always
+ * overwrites the old.
+ *
+ * The cache is shared by all of ParallelSearch's workers without locking.
+ * Each slot holds the score and the key XORed with it; a reader only
+ * accepts a slot whose two words still XOR to its key, so an entry torn by
+ * two threads writing it at once reads as a miss.
+ */
+public class EvalCache {
+
+  public final static int DEFAULT_SIZE = 1 << 18;
+
+  /**
+   * probe() returns MISS when the position is not in the cache.
+   */
+  public final static int MISS = Integer.MIN_VALUE;
+
+  // entries[2 * i] is key ^ data and entries[2 * i + 1] is data, where data
+  // is the score, for white, shifted left once with the low bit set so that
+  // an empty slot never matches.
+  private final long[] entries;
+  private final int mask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public EvalCache() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * Creates a cache with the given number of slots.
+   *
+   * @param size the number of slots, rounded up to a power of two
+   */
+  public EvalCache(int size) {
+    int slots = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+    entries = new long[2 * slots];
+    mask = slots - 1;
+  }
+
+  public int size() {
+    return entries.length / 2;
+  }
+
+  /**
+   * probe() looks up a position's score.
+   *
+   * @param key the position's BitBoard.canonicalHash()
+   * @param color the color to score the position for
+   * @return the score, or MISS
+   */
+  public int probe(long key, int color) {
+    int slot = 2 * ((int) key & mask);
+    long data = entries[slot + 1];
+    if ((entries[slot] ^ data) != key || data == 0) {
+      misses.increment();
+      return MISS;
+    }
+    hits.increment();
+    int score = (int) (data >> 1);
+    return color == Board.WHITE ? score : -score;
+  }
+
+  /**
+   * store() records a position's score, replacing whatever its slot held.
+   *
+   * @param key the position's BitBoard.canonicalHash()
+   * @param color the color the score is for
+   * @param score the score
+   */
+  public void store(long key, int color, int score) {
+    long data = (long) (color == Board.WHITE ? score : -score) << 1 | 1;
+    int slot = 2 * ((int) key & mask);
+    entries[slot] = key ^ data;
+    entries[slot + 1] = data;
+  }
+
+  /**
+   * clear() empties the cache and resets its counters.
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = 0;
+    }
+    hits.reset();
+    misses.reset();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * hitRate() returns the fraction of probes that found their position, or
+   * 0 if there have been none.
+   */
+  public double hitRate() {
+    long h = hits(), total = h + misses();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+}
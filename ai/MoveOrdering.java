@@ -0,0 +1,105 @@
+package ai;
+
+import java.util.Arrays;
+
+import player.Move;
+
+/**
+ * A MoveOrdering sorts the moves at each node so that the ones most likely
+ * to cause an alpha-beta cutoff are searched first: the best move the
+ * transposition table remembers for the position, then this ply's two
+ * killer moves (the last moves to cause a cutoff at the same ply), then the
+ * rest by their history score (how much search depth their cutoffs have
+ * saved anywhere in the tree). Moves with equal scores keep
+ * BitBoard.generateMoves() order.
+ *
+ * It also counts how often a cutoff comes from the first move searched,
+ * which is how well the ordering is working. Like its SearchContext, a
+ * MoveOrdering belongs to one thread.
+ */
+class MoveOrdering {
+
+  // Sort ranks above any history score.
+  private final static long TABLE_RANK = 1L << 42;
+  private final static long KILLER_RANK = 1L << 41;
+  // History scores are halved once one of them reaches this.
+  private final static int HISTORY_LIMIT = 1 << 30;
+
+  // killers[ply][0] is the newer killer, killers[ply][1] the older.
+  private final int[][] killers = new int[AI.MAX_DEPTH + 1][2];
+  // history[c][move] for the black (c = 0) and white (c = 1) packed moves.
+  private final int[][] history = new int[2][(Move.STEP + 1) << 12];
+
+  // Scratch space for order(); one node at a time sorts.
+  private final long[] keys = new long[BitBoard.MAX_MOVES];
+  private final int[] unsorted = new int[BitBoard.MAX_MOVES];
+
+  // Nodes which cut off, and of those, the ones that did so on their first move.
+  long cutoffs;
+  long firstMoveCutoffs;
+
+  /**
+   * order() sorts the given moves into the order to search them.
+   *
+   * @param moves packed moves, as from BitBoard.generateMoves()
+   * @param count the number of moves
+   * @param ply the number of moves made since the root of the search
+   * @param color the color to move
+   * @param tableMove the transposition table's best move, or
+   *          BitBoard.NO_MOVE
+   */
+  void order(int[] moves, int count, int ply, int color, int tableMove) {
+    int[] scores = history[color == Board.WHITE ? 1 : 0];
+    int killer = killers[ply][0], older = killers[ply][1];
+    for (int i = 0; i < count; i++) {
+      int m = moves[i];
+      long rank = m == tableMove ? TABLE_RANK : m == killer ? KILLER_RANK
+          : m == older ? KILLER_RANK - 1 : scores[m];
+      // Ascending keys put the highest rank first, ties in their old order.
+      keys[i] = (TABLE_RANK - rank) << 16 | i;
+      unsorted[i] = m;
+    }
+    Arrays.sort(keys, 0, count);
+    for (int i = 0; i < count; i++) {
+      moves[i] = unsorted[(int) keys[i] & 0xFFFF];
+    }
+  }
+
+  /**
+   * cutoff() records that a move caused a cutoff.
+   *
+   * @param move the packed move
+   * @param index its place in the order the node searched its moves
+   * @param ply the number of moves made since the root of the search
+   * @param color the color that made it
+   * @param depth the depth the node was searched to
+   */
+  void cutoff(int move, int index, int ply, int color, int depth) {
+    cutoffs++;
+    if (index == 0) {
+      firstMoveCutoffs++;
+    }
+    if (killers[ply][0] != move) {
+      killers[ply][1] = killers[ply][0];
+      killers[ply][0] = move;
+    }
+    int[] scores = history[color == Board.WHITE ? 1 : 0];
+    scores[move] += depth * depth;
+    if (scores[move] >= HISTORY_LIMIT) {
+      for (int[] h : history) {
+        for (int i = 0; i < h.length; i++) {
+          h[i] >>= 1;
+        }
+      }
+    }
+  }
+
+  /**
+   * firstMoveCutoffRate() returns the fraction of cutoffs caused by the
+   * first move searched, or 0 if there were none.
+   */
+  double firstMoveCutoffRate() {
+    return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+  }
+
+}
@@ -0,0 +1,172 @@
+package ai;
+
+/**
+ * A NetworkSearch finds paths through one color's chips. load() numbers the
+ * chips 0, 1, 2, ... in BitBoard.chip() order and builds a table of which
+ * chip is connected to which in each direction; the searches then keep the
+ * chips on the current path as a bit mask over those numbers. Nothing is
+ * allocated after construction, so a BitBoard keeps one NetworkSearch and
+ * reuses it for every query.
+ */
+class NetworkSearch {
+
+  private final static int DIRECTIONS = BitBoard.DX.length;
+
+  // The square of each chip.
+  private final int[] squares = new int[BitBoard.SQUARES];
+  // The chip number on each square, for squares holding a loaded chip.
+  private final int[] numbers = new int[BitBoard.SQUARES];
+  // next[i * 8 + d] is the chip connected to chip i in direction d, or -1.
+  private final int[] next = new int[BitBoard.SQUARES * DIRECTIONS];
+  private int chips;
+  // The chips in the near (low) and far (high) goal.
+  private long lowGoal, highGoal;
+
+  // The winning path found by the last findNetwork(), as chip numbers.
+  private final int[] path = new int[BitBoard.SQUARES];
+  private int pathLength;
+
+  // The longest path found so far by longestPath(), and the most it could be.
+  private int longest, longestBound;
+
+  /**
+   * load() builds the connection table for color's chips on board.
+   */
+  void load(BitBoard board, int color) {
+    chips = board.numberChips(color);
+    lowGoal = 0;
+    highGoal = 0;
+    long low = color == Board.WHITE ? BitBoard.WHITE_GOAL_LOW
+        : BitBoard.BLACK_GOAL_LOW;
+    long high = color == Board.WHITE ? BitBoard.WHITE_GOAL_HIGH
+        : BitBoard.BLACK_GOAL_HIGH;
+    for (int i = 0; i < chips; i++) {
+      int s = board.chip(color, i);
+      squares[i] = s;
+      numbers[s] = i;
+      if ((low & (1L << s)) != 0) {
+        lowGoal |= 1L << i;
+      }
+      else if ((high & (1L << s)) != 0) {
+        highGoal |= 1L << i;
+      }
+    }
+    for (int i = 0; i < chips; i++) {
+      int s = squares[i];
+      long connected = board.connections(s);
+      for (int d = 0; d < DIRECTIONS; d++) {
+        int t = board.link(s, d);
+        next[i * DIRECTIONS + d] = t >= 0 && (connected & (1L << t)) != 0 ? numbers[t]
+            : -1;
+      }
+    }
+  }
+
+  /**
+   * findNetwork() looks for a network among the loaded chips: a path of at
+   * least six chips from the near goal to the far goal, with no goal chips
+   * in between, that visits no chip twice and never continues straight
+   * through a chip in the direction it arrived from.
+   *
+   * @return true if there is one; path() then holds it
+   */
+  boolean findNetwork() {
+    for (int i = 0; i < chips; i++) {
+      if ((lowGoal & (1L << i)) != 0) {
+        path[0] = i;
+        if (findNetworkHelper(i, 1L << i, 1, BitBoard.NO_DIRECTION)) {
+          return true;
+        }
+      }
+    }
+    pathLength = 0;
+    return false;
+  }
+
+  private boolean findNetworkHelper(int chip, long visited, int length,
+      int dir) {
+    for (int d = 0; d < DIRECTIONS; d++) {
+      int c = next[chip * DIRECTIONS + d];
+      if (c < 0 || d == dir) {
+        continue;
+      }
+      long bit = 1L << c;
+      if ((visited & bit) != 0 || (lowGoal & bit) != 0) {
+        continue;
+      }
+      path[length] = c;
+      if ((highGoal & bit) != 0) {
+        if (length + 1 >= 6) {
+          pathLength = length + 1;
+          return true;
+        }
+      }
+      else if (findNetworkHelper(c, visited | bit, length + 1, d)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * pathLength() returns the number of chips in the network found by the
+   * last findNetwork(), or 0 if it found none.
+   */
+  int pathLength() {
+    return pathLength;
+  }
+
+  /**
+   * pathSquare() returns the square of the i-th chip of the network found by
+   * the last findNetwork(), starting from the near goal.
+   */
+  int pathSquare(int i) {
+    return squares[path[i]];
+  }
+
+  /**
+   * longestPath() returns the number of chips in the longest path through
+   * the loaded chips which follows the rules of a network (see
+   * findNetwork()) apart from length and reaching both goals. No path can
+   * hold more than one chip from each goal, so the search stops as soon as
+   * it finds a path through every other chip.
+   */
+  int longestPath() {
+    int inner = Long.bitCount(~(lowGoal | highGoal) & ((1L << chips) - 1));
+    longestBound = inner + (lowGoal != 0 ? 1 : 0) + (highGoal != 0 ? 1 : 0);
+    longest = 0;
+    for (int i = 0; i < chips && longest < longestBound; i++) {
+      long bit = 1L << i;
+      long sameGoal = (lowGoal & bit) != 0 ? lowGoal
+          : (highGoal & bit) != 0 ? highGoal : 0;
+      longestPathHelper(i, bit | sameGoal, 1, BitBoard.NO_DIRECTION);
+    }
+    return longest;
+  }
+
+  /**
+   * longestPathHelper() extends the path ending at chip, raising longest to
+   * its length and to the length of every extension of it.
+   *
+   * @param chip the last chip on the path
+   * @param closed the chips on the path, plus those in the starting chip's
+   *          goal, none of which the path may enter
+   * @param length the number of chips on the path
+   * @param dir the direction taken to reach chip
+   */
+  private void longestPathHelper(int chip, long closed, int length, int dir) {
+    if (length > longest) {
+      longest = length;
+    }
+    if (length > 1 && ((lowGoal | highGoal) & (1L << chip)) != 0) {
+      return;
+    }
+    for (int d = 0; d < DIRECTIONS && longest < longestBound; d++) {
+      int c = next[chip * DIRECTIONS + d];
+      if (c >= 0 && d != dir && (closed & (1L << c)) == 0) {
+        longestPathHelper(c, closed | 1L << c, length + 1, d);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,173 @@
+package ai;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import player.Move;
+
+/**
+ * An OpeningBook holds moves searched ahead of time for early positions, so
+ * a player can answer them at once and save its clock for the middle game.
+ * Entries are keyed by BitBoard.canonicalHash(color) of the position with
+ * the side to move, so one entry serves every position equivalent to it,
+ * and each move is stored as it is on the canonical board.
+ *
+ * The keys are kept sorted, so lookup() is a binary search. On disk a book
+ * is MAGIC, the number of entries, then each entry as its key (a long) and
+ * packed move (a short), in key order. tests.OpeningBookGenerator writes
+ * books; standard() reads the one shipped next to this class.
+ */
+public class OpeningBook {
+
+  /**
+   * The name of the book standard() loads, relative to this class.
+   */
+  public final static String RESOURCE = "opening.book";
+
+  // "NBK1"
+  private final static int MAGIC = 0x4E424B31;
+
+  private static OpeningBook standard;
+
+  private long[] keys = new long[16];
+  private short[] moves = new short[16];
+  private int size;
+
+  /**
+   * standard() returns a copy of the book shipped as RESOURCE, loading it
+   * the first time, or an empty book if there is none or it cannot be read.
+   * Each caller gets its own copy, so put() on one player's book leaves
+   * every other player's alone.
+   */
+  public static synchronized OpeningBook standard() {
+    if (standard == null) {
+      standard = new OpeningBook();
+      InputStream in = OpeningBook.class.getResourceAsStream(RESOURCE);
+      if (in != null) {
+        try {
+          try {
+            standard = load(in);
+          }
+          finally {
+            in.close();
+          }
+        }
+        catch (IOException e) {
+          // Play without a book rather than not at all.
+        }
+      }
+    }
+    return standard.copy();
+  }
+
+  // copy() returns a book holding the same entries as this one.
+  private OpeningBook copy() {
+    OpeningBook copy = new OpeningBook();
+    copy.keys = Arrays.copyOf(keys, Math.max(size, 1));
+    copy.moves = Arrays.copyOf(moves, Math.max(size, 1));
+    copy.size = size;
+    return copy;
+  }
+
+  /**
+   * load() reads a book written by save().
+   *
+   * @param in the stream to read; it is not closed
+   * @return the book
+   * @throws IOException if the stream cannot be read or holds no book
+   */
+  public static OpeningBook load(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("not an opening book");
+    }
+    int count = data.readInt();
+    OpeningBook book = new OpeningBook();
+    book.keys = new long[Math.max(count, 1)];
+    book.moves = new short[Math.max(count, 1)];
+    for (int i = 0; i < count; i++) {
+      book.keys[i] = data.readLong();
+      book.moves[i] = data.readShort();
+      if (i > 0 && book.keys[i] <= book.keys[i - 1]) {
+        throw new IOException("opening book keys out of order");
+      }
+    }
+    book.size = count;
+    return book;
+  }
+
+  /**
+   * save() writes the book in the form load() reads.
+   *
+   * @param out the stream to write; it is flushed but not closed
+   */
+  public void save(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      data.writeLong(keys[i]);
+      data.writeShort(moves[i]);
+    }
+    data.flush();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * put() records the move to play in a position, replacing any move the
+   * book already had for it or for a position equivalent to it.
+   *
+   * @param board the position
+   * @param color the color to move
+   * @param move a valid move for color
+   */
+  public void put(BitBoard board, int color, Move move) {
+    int symmetry = board.canonicalSymmetry(color);
+    long key = board.symmetricHash(symmetry, color);
+    short packed = (short) BitBoard.transformMove(symmetry,
+        BitBoard.encode(move));
+    int i = Arrays.binarySearch(keys, 0, size, key);
+    if (i >= 0) {
+      moves[i] = packed;
+      return;
+    }
+    i = -(i + 1);
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * size);
+      moves = Arrays.copyOf(moves, 2 * size);
+    }
+    System.arraycopy(keys, i, keys, i + 1, size - i);
+    System.arraycopy(moves, i, moves, i + 1, size - i);
+    keys[i] = key;
+    moves[i] = packed;
+    size++;
+  }
+
+  /**
+   * lookup() returns the book move for a position.
+   *
+   * @param board the position
+   * @param color the color to move
+   * @return the move, or null if the book has none (or only one that is not
+   *         valid here, which means two positions' hashes collided)
+   */
+  public Move lookup(BitBoard board, int color) {
+    int symmetry = board.canonicalSymmetry(color);
+    int i = Arrays.binarySearch(keys, 0, size,
+        board.symmetricHash(symmetry, color));
+    if (i < 0) {
+      return null;
+    }
+    Move move = BitBoard.decode(BitBoard.transformMove(
+        BitBoard.inverse(symmetry), moves[i]));
+    return board.isValid(color, move) ? move : null;
+  }
+
+}
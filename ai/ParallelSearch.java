@@ -0,0 +1,434 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import player.Move;
+
+/**
+ * A ParallelSearch splits the moves at the root of AI's alpha-beta search
+ * across a pool of worker threads. Each worker searches on its own copy of
+ * the board, taking the next unsearched root move until none are left. The
+ * workers share one transposition table, which is safe without locking
+ * (see TranspositionTable), so each finds the positions the others have
+ * already searched; with a table each, two workers searched several times
+ * the nodes one did. The best root score found so far is shared too and
+ * used as alpha, so each worker prunes as if it had searched the other
+ * workers' moves itself.
+ *
+ * Among root moves with equal scores the first one in search order wins, as
+ * it does in AI.bestMove(). A worker which finds a move no better than the
+ * shared alpha only learns a bound on its score, so before a tie is settled
+ * the earlier moves tied on that bound are searched again to see whether
+ * they really reach it.
+ */
+public class ParallelSearch {
+
+  // The score of a root move no worker searched.
+  private final static int UNSEARCHED = Integer.MIN_VALUE;
+
+  private final int threads;
+  private final ForkJoinPool pool;
+  private final TranspositionTable table;
+
+  // Statistics about the last search, for callers measuring scaling. A new
+  // SearchStats is made for each search, so one returned stays as it was.
+  private SearchStats stats = new SearchStats();
+  private long lastNanos;
+  private int lastDepth;
+  private int lastScore;
+
+  // The move and score of the last call to search().
+  private int searchMove, searchScore;
+
+  private boolean principalVariation = true;
+  // Shared by every worker, or null.
+  private EvalCache evalCache;
+
+  /**
+   * Creates a search which runs on the given number of threads, sharing a
+   * transposition table of tableSize slots.
+   *
+   * @param threads the number of worker threads, at least 1
+   * @param tableSize the number of slots in the table
+   */
+  public ParallelSearch(int threads, int tableSize) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    this.threads = threads;
+    pool = new ForkJoinPool(threads);
+    table = new TranspositionTable(tableSize,
+        TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+  }
+
+  public ParallelSearch(int threads) {
+    this(threads, TranspositionTable.DEFAULT_SIZE);
+  }
+
+  public int threads() {
+    return threads;
+  }
+
+  /**
+   * lastNodes() returns the number of nodes all workers visited during the
+   * last search.
+   */
+  public long lastNodes() {
+    return stats.nodes();
+  }
+
+  /**
+   * lastFirstMoveCutoffRate() returns the fraction of the last search's
+   * cutoffs that came from the first move searched at their node; the
+   * closer to 1, the better the move ordering.
+   */
+  public double lastFirstMoveCutoffRate() {
+    return stats.firstMoveCutoffRate();
+  }
+
+  /**
+   * lastMillis() returns the wall-clock time the last search took.
+   */
+  public double lastMillis() {
+    return lastNanos / 1e6;
+  }
+
+  /**
+   * lastDepth() returns the depth of the last completed iteration.
+   */
+  public int lastDepth() {
+    return lastDepth;
+  }
+
+  /**
+   * lastScore() returns the score of the move the last search chose, as
+   * AI.bestMoveHelper() scores it.
+   */
+  public int lastScore() {
+    return lastScore;
+  }
+
+  /**
+   * lastStats() returns what the last search did, with its counts summed
+   * over every worker. The principal variation is read from the shared
+   * table.
+   */
+  public SearchStats lastStats() {
+    return stats;
+  }
+
+  /**
+   * setPrincipalVariationSearch() turns the null-window searches of
+   * AI.bestMoveHelper() on (the default) or off, e.g. to compare node
+   * counts.
+   */
+  public void setPrincipalVariationSearch(boolean on) {
+    principalVariation = on;
+  }
+
+  /**
+   * setEvalCache() gives every worker the given evaluation cache to share,
+   * or none if it is null.
+   */
+  public void setEvalCache(EvalCache cache) {
+    evalCache = cache;
+  }
+
+  /**
+   * shutdown() stops the worker threads. The search may not be used again.
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * bestMove() returns the same move AI.bestMove() would, searching the root
+   * moves in parallel.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board; it is not modified
+   * @param depth the depth to which eval() checks
+   * @return the strongest move
+   */
+  public Move bestMove(int color, BitBoard board, int depth) {
+    long start = System.nanoTime();
+    stats = new SearchStats();
+    table.newSearch();
+    search(color, board, depth, 0, -AI.INFINITY, AI.INFINITY);
+    lastNanos = System.nanoTime() - start;
+    lastDepth = depth;
+    lastScore = searchScore;
+    stats.iteration(stats.nodes);
+    finish(board, color, searchMove);
+    return AI.toMove(searchMove);
+  }
+
+  /**
+   * bestMoveBefore() deepens the parallel search one ply at a time until the
+   * deadline passes, like AI.bestMoveBefore(), with the same aspiration
+   * windows.
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board; it is not modified
+   * @param deadline the System.nanoTime() by which to return
+   * @return the strongest move found in time
+   */
+  public Move bestMoveBefore(int color, BitBoard board, long deadline) {
+    return bestMoveBefore(color, board, 0, deadline);
+  }
+
+  /**
+   * bestMoveBefore() deepens the parallel search until the deadline passes,
+   * as above, but starts no iteration once the target has passed, nor one
+   * TimeManager predicts will not finish by the deadline, like
+   * AI.bestMoveBefore().
+   *
+   * @param color the turn of the current player (determined by color)
+   * @param board the current state of the board; it is not modified
+   * @param target the System.nanoTime() after which to start no iteration,
+   *        or 0 to deepen until the deadline
+   * @param deadline the System.nanoTime() by which to return
+   * @return the strongest move found in time
+   */
+  public Move bestMoveBefore(int color, BitBoard board, long target,
+      long deadline) {
+    long start = System.nanoTime();
+    stats = new SearchStats();
+    lastDepth = 0;
+    table.newSearch();
+    Move best = null;
+    // The nodes the two iterations before the last visited.
+    long previous = 0, older = 0;
+    for (int depth = 1; depth <= AI.MAX_DEPTH; depth++) {
+      long nodes = stats.nodes, began = System.nanoTime();
+      int alpha = -AI.INFINITY, beta = AI.INFINITY;
+      if (depth > 1) {
+        alpha = lastScore - AI.ASPIRATION_WINDOW;
+        beta = lastScore + AI.ASPIRATION_WINDOW;
+      }
+      boolean finished;
+      while (true) {
+        finished = search(color, board, depth, depth == 1 ? 0 : deadline,
+            alpha, beta);
+        if (!finished || (searchScore > alpha && searchScore < beta)) {
+          break;
+        }
+        if (searchScore <= alpha) {
+          alpha = -AI.INFINITY;
+        }
+        else {
+          beta = AI.INFINITY;
+        }
+      }
+      if (!finished) {
+        break;
+      }
+      best = AI.toMove(searchMove);
+      lastDepth = depth;
+      lastScore = searchScore;
+      nodes = stats.nodes - nodes;
+      stats.iteration(nodes);
+      long now = System.nanoTime();
+      if (AI.isWin(lastScore) || AI.isLoss(lastScore)
+          || now - deadline >= 0 || (target != 0 && (now - target >= 0
+              || now + TimeManager.predict(now - began, nodes, previous,
+                  older) - deadline > 0))) {
+        break;
+      }
+      older = previous;
+      previous = nodes;
+    }
+    lastNanos = System.nanoTime() - start;
+    finish(board, color, best == null ? BitBoard.NO_MOVE
+        : BitBoard.encode(best));
+    return best;
+  }
+
+  /**
+   * finish() records the last search's depth, time, score and principal
+   * variation.
+   */
+  private void finish(BitBoard board, int color, int move) {
+    stats.record(lastDepth, lastNanos, lastScore);
+    stats.principalVariation = AI.principalVariation(new BitBoard(board),
+        color, color, move, lastDepth, table);
+  }
+
+  /**
+   * search() runs one fixed-depth parallel search with the root window
+   * (alpha, beta), leaving the best move and its score in searchMove and
+   * searchScore. Like AI.bestMoveHelper() it fails soft: a score outside
+   * the window is only a bound.
+   *
+   * @return false if the deadline passed before the search finished
+   */
+  private boolean search(final int color, BitBoard board, final int depth,
+      final long deadline, int alpha, final int beta) {
+    // The opening move, a finished game and depth 1 gain nothing from
+    // splitting; let a single search handle them.
+    if (depth <= 1 || board.numberChips(color) == 0
+        || board.hasNetwork(color) || board.hasNetwork(AI.invertColor(color))) {
+      SearchContext context = context(board, color);
+      context.deadline = deadline;
+      int score = AI.bestMoveHelper(color, depth, 0, alpha, beta, context);
+      count(context);
+      if (context.aborted) {
+        return false;
+      }
+      searchScore = score;
+      searchMove = context.bestMove;
+      return true;
+    }
+
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    final int[] rootMoves = Arrays.copyOf(moves,
+        board.generateMoves(color, moves));
+    // Search the move the table remembers first, the rest in their order.
+    int symmetry = board.canonicalSymmetry(color);
+    long entry = table.probe(AI.tableKey(board, color, color, symmetry));
+    int tableMove = entry == TranspositionTable.MISS ? BitBoard.NO_MOVE
+        : BitBoard.transformMove(BitBoard.inverse(symmetry),
+            TranspositionTable.move(entry));
+    for (int i = 1; tableMove != BitBoard.NO_MOVE && i < rootMoves.length;
+        i++) {
+      if (rootMoves[i] == tableMove) {
+        System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+        rootMoves[0] = tableMove;
+        break;
+      }
+    }
+    // UNSEARCHED for a move skipped once another failed high.
+    final int[] scores = new int[rootMoves.length];
+    Arrays.fill(scores, UNSEARCHED);
+    // Whether each score is exact, rather than a bound at or below alpha.
+    final boolean[] exact = new boolean[rootMoves.length];
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger shared = new AtomicInteger(alpha);
+
+    ArrayList<Callable<SearchContext>> workers = new ArrayList<Callable<SearchContext>>();
+    for (int i = 0; i < threads; i++) {
+      final SearchContext context = context(new BitBoard(board), color);
+      context.deadline = deadline;
+      workers.add(new Callable<SearchContext>() {
+        public SearchContext call() {
+          for (int m = next.getAndIncrement(); m < rootMoves.length
+              && !context.aborted; m = next.getAndIncrement()) {
+            int a = shared.get();
+            if (a >= beta) {
+              // Another move already fails high; the caller will re-search.
+              break;
+            }
+            scores[m] = score(context, rootMoves[m], depth, a, beta, m == 0);
+            exact[m] = scores[m] > a && scores[m] < beta;
+            raise(shared, scores[m]);
+          }
+          return context;
+        }
+      });
+    }
+
+    boolean aborted = false;
+    try {
+      for (Future<SearchContext> f : pool.invokeAll(workers)) {
+        SearchContext context = f.get();
+        count(context);
+        aborted |= context.aborted;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    if (aborted) {
+      return false;
+    }
+
+    // The first move is always searched, since alpha starts below beta.
+    int best = 0;
+    for (int i = 1; i < scores.length; i++) {
+      if (scores[i] != UNSEARCHED && scores[best] < scores[i]) {
+        best = i;
+      }
+    }
+    int top = scores[best];
+    if (top > alpha && top < beta) {
+      // An earlier move whose bound equals the best score may be as good.
+      SearchContext check = context(board, color);
+      check.deadline = deadline;
+      for (int i = 0; i < best; i++) {
+        if (scores[i] == top && !exact[i]
+            && score(check, rootMoves[i], depth, top - 1, beta, true) >= top) {
+          best = i;
+          break;
+        }
+      }
+      count(check);
+      if (check.aborted) {
+        return false;
+      }
+    }
+    searchMove = rootMoves[best];
+    searchScore = scores[best];
+    return true;
+  }
+
+  /**
+   * context() creates a SearchContext set up the way this search is.
+   */
+  private SearchContext context(BitBoard board, int color) {
+    SearchContext context = new SearchContext(board, color, table);
+    context.principalVariation = principalVariation;
+    context.evalCache = evalCache;
+    return context;
+  }
+
+  /**
+   * score() searches one root move in the window (alpha, beta), first with
+   * a null window unless full is set or principal variation search is off.
+   */
+  private int score(SearchContext context, int move, int depth, int alpha,
+      int beta, boolean full) {
+    int color = context.AIcolor;
+    int opponent = AI.invertColor(color);
+    context.board.makeMove(color, move);
+    int score;
+    if (full || !principalVariation || alpha == -AI.INFINITY) {
+      score = AI.bestMoveHelper(opponent, depth - 1, 1, alpha, beta, context);
+    }
+    else {
+      score = AI.bestMoveHelper(opponent, depth - 1, 1, alpha, alpha + 1,
+          context);
+      if (score > alpha && score < beta && !context.aborted) {
+        score = AI.bestMoveHelper(opponent, depth - 1, 1, score - 1, beta,
+            context);
+      }
+    }
+    context.board.unmakeMove(color, move);
+    return score;
+  }
+
+  /**
+   * count() adds a finished context's statistics to the last search's.
+   */
+  private void count(SearchContext context) {
+    stats.add(context);
+  }
+
+  /**
+   * raise() sets alpha to the larger of its value and score.
+   */
+  private static void raise(AtomicInteger alpha, int score) {
+    int old = alpha.get();
+    while (old < score && !alpha.compareAndSet(old, score)) {
+      old = alpha.get();
+    }
+  }
+
+}
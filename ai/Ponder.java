@@ -0,0 +1,157 @@
+package ai;
+
+import player.Move;
+
+/**
+ * A Ponder searches on a background thread while the opponent thinks. Given
+ * the reply the last search expects, it searches the position after that
+ * reply, as the next move's search would; given none, it searches every
+ * reply at once, from the opponent's side of the same tree. Either way it
+ * deepens until it is stopped, filling in the player's transposition table
+ * and evaluation cache as it goes.
+ *
+ * When the opponent plays the reply being pondered, finish() gives the
+ * search a deadline and waits for its move, so the time spent pondering is
+ * added to the move's own. Otherwise stop() abandons the search, within a
+ * few thousand nodes, and the next search starts from what it left in the
+ * table.
+ *
+ * The table may be shared between threads, but the caller must not search
+ * with it between start() and stop() or finish(): the ponder thread goes on
+ * storing entries under the table's current generation, and the
+ * newSearch() that begins another search would age them while it runs. A
+ * Ponder searches a copy of the board it is given, which the caller may go
+ * on changing.
+ */
+public class Ponder {
+
+  private Thread thread;
+  private SearchContext context;
+  private SearchStats stats;
+  // The reply being pondered, packed, or BitBoard.NO_MOVE if every reply is.
+  private int reply;
+  // The move the search chose; read only once the thread has ended.
+  private Move result;
+
+  /**
+   * start() begins pondering, stopping any pondering already going on.
+   *
+   * @param board the position, with the opponent to move
+   * @param color the color pondering, which moves after the opponent
+   * @param reply the reply to ponder, or null to ponder every reply
+   * @param table the table the next search will use
+   * @param cache the evaluation cache the next search will use, or null
+   */
+  public void start(BitBoard board, int color, Move reply,
+      TranspositionTable table, EvalCache cache) {
+    stop();
+    final BitBoard position = new BitBoard(board);
+    final int toMove;
+    if (reply != null && position.makeMove(-color, reply)) {
+      this.reply = BitBoard.encode(reply);
+      toMove = color;
+    }
+    else {
+      this.reply = BitBoard.NO_MOVE;
+      toMove = -color;
+    }
+    if (table != null) {
+      table.newSearch();
+    }
+    final SearchContext ponder = new SearchContext(position, color, table);
+    ponder.evalCache = cache;
+    final SearchStats figures = new SearchStats();
+    context = ponder;
+    stats = figures;
+    result = null;
+    thread = new Thread(new Runnable() {
+      public void run() {
+        result = AI.deepen(toMove, ponder, figures);
+      }
+    }, "ponder");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * isPondering() tells whether start() was called and neither stop() nor
+   * finish() has been since.
+   */
+  public boolean isPondering() {
+    return thread != null;
+  }
+
+  /**
+   * ponders() tells whether the given reply is the one being pondered.
+   */
+  public boolean ponders(Move reply) {
+    return thread != null && this.reply != BitBoard.NO_MOVE
+        && BitBoard.encode(reply) == this.reply;
+  }
+
+  /**
+   * stop() stops pondering and waits for the search to unwind.
+   */
+  public void stop() {
+    if (thread != null) {
+      context.stopped = true;
+      join();
+    }
+  }
+
+  /**
+   * finish() gives the search of the reply being pondered a deadline, and
+   * waits for it.
+   *
+   * @param deadline the System.nanoTime() by which to return
+   * @return the move chosen after the reply, or null if none was
+   */
+  public Move finish(long deadline) {
+    return finish(0, deadline);
+  }
+
+  /**
+   * finish() gives the search of the reply being pondered a deadline, as
+   * above, and a target, as AI.bestMoveBefore() takes them.
+   *
+   * @param target the System.nanoTime() after which to start no iteration,
+   *        or 0 to deepen until the deadline
+   * @param deadline the System.nanoTime() by which to return
+   * @return the move chosen after the reply, or null if none was
+   */
+  public Move finish(long target, long deadline) {
+    if (thread == null || reply == BitBoard.NO_MOVE) {
+      stop();
+      return null;
+    }
+    context.target = target;
+    context.deadline = deadline;
+    join();
+    return result;
+  }
+
+  /**
+   * lastStats() returns what the last pondering search did, from when it
+   * started. They are complete once it has been stopped or finished.
+   */
+  public SearchStats lastStats() {
+    return stats;
+  }
+
+  private void join() {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        thread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    thread = null;
+  }
+
+}
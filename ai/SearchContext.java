@@ -0,0 +1,85 @@
+package ai;
+
+/**
+ * A SearchContext holds the state shared by every node of one search: the
+ * board being searched, the AI's color, the transposition table, the
+ * evaluation cache, the move ordering heuristics, the deadline and the
+ * counts SearchStats reports. AI.bestMoveHelper() takes one instead of a
+ * growing list of parameters.
+ */
+class SearchContext {
+
+  // How many nodes to visit between looks at the clock. Each of
+  // ParallelSearch's workers counts its own nodes, and runs slower than a
+  // lone search when they outnumber the processors, so this is small enough
+  // for a worker to see the deadline within a few milliseconds even then.
+  private final static int CLOCK_INTERVAL = 256;
+
+  final BitBoard board;
+  final int AIcolor;
+  final TranspositionTable table;
+  final MoveOrdering ordering = new MoveOrdering();
+  // Scores of positions evaluated before, or null.
+  EvalCache evalCache;
+  // Whether to search later moves with a null window first; see
+  // AI.bestMoveHelper().
+  boolean principalVariation = true;
+
+  // System.nanoTime() at which to give up, or 0 to search until done. It
+  // and stopped may be set by another thread while the search runs.
+  volatile long deadline;
+  // System.nanoTime() after which AI.deepen() starts no iteration, or 0 to
+  // deepen until the deadline; see TimeManager.
+  volatile long target;
+  // Set to give up at once, whatever the deadline.
+  volatile boolean stopped;
+  // Whether to ignore the deadline, so the iteration running finishes.
+  boolean mustFinish;
+  // Set once the deadline has passed or the search was stopped; every node
+  // then returns at once.
+  boolean aborted;
+  long nodes;
+  // What the nodes did, for SearchStats.
+  long leafEvals;
+  long evalProbes, evalHits;
+  long tableProbes, tableHits, tableCutoffs;
+  long expanded, movesSearched;
+  // The best move found so far at the root, packed as by BitBoard.encode().
+  int bestMove = BitBoard.NO_MOVE;
+
+  // A move buffer for each ply, created the first time the ply is reached.
+  private final int[][] moves = new int[AI.MAX_DEPTH + 1][];
+
+  SearchContext(BitBoard board, int AIcolor, TranspositionTable table) {
+    this.board = board;
+    this.AIcolor = AIcolor;
+    this.table = table;
+  }
+
+  /**
+   * visit() counts a node and reports whether the search should stop.
+   *
+   * @return true if the deadline has passed or the search was stopped
+   */
+  boolean visit() {
+    nodes++;
+    if (nodes % CLOCK_INTERVAL == 0 && !aborted) {
+      long d = deadline;
+      aborted = stopped
+          || (d != 0 && !mustFinish && System.nanoTime() - d >= 0);
+    }
+    return aborted;
+  }
+
+  /**
+   * moves() returns the buffer BitBoard.generateMoves() fills at the given
+   * ply. Each ply has its own, so a node's moves survive its children.
+   */
+  int[] moves(int ply) {
+    if (moves[ply] == null) {
+      moves[ply] = new int[BitBoard.MAX_MOVES];
+    }
+    return moves[ply];
+  }
+
+}
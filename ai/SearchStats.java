@@ -0,0 +1,260 @@
+package ai;
+
+import player.Move;
+
+/**
+ * A SearchStats reports what one search did: the depth of the deepest
+ * iteration it finished, the nodes it visited, how long it took and the
+ * score of the move it chose, along with the figures that explain them:
+ * leaf evaluations, transposition table and evaluation cache hits, cutoffs,
+ * branching factors and the principal variation. AI.bestMove() and
+ * AI.bestMoveBefore() fill one in when given it, and
+ * ParallelSearch.lastStats() returns one. toJson() writes it out as one
+ * line of JSON.
+ *
+ * The counts cover every iteration of an iterative search, including one
+ * cut short by the deadline.
+ */
+public class SearchStats {
+
+  int depth;
+  long nodes;
+  long nanos;
+  int score;
+
+  // Positions scored by AI.positional(), the eval cache's probes and hits,
+  // and the table's probes, hits and hits that answered the node outright.
+  long leafEvals;
+  long evalProbes, evalHits;
+  long tableProbes, tableHits, tableCutoffs;
+  // Nodes which cut off, and of those, the ones that did so on their first
+  // move.
+  long cutoffs, firstMoveCutoffs;
+  // Nodes whose moves were searched, and the moves they searched.
+  long expanded, movesSearched;
+  // Nodes visited by the last two iterations finished.
+  long iterationNodes, previousIterationNodes;
+  // Packed moves, starting with the move chosen.
+  int[] principalVariation = new int[0];
+
+  /**
+   * clear() resets every figure to 0, as for a move made without searching.
+   */
+  public void clear() {
+    depth = 0;
+    nodes = 0;
+    nanos = 0;
+    score = 0;
+    leafEvals = 0;
+    evalProbes = 0;
+    evalHits = 0;
+    tableProbes = 0;
+    tableHits = 0;
+    tableCutoffs = 0;
+    cutoffs = 0;
+    firstMoveCutoffs = 0;
+    expanded = 0;
+    movesSearched = 0;
+    iterationNodes = 0;
+    previousIterationNodes = 0;
+    principalVariation = new int[0];
+  }
+
+  public int depth() {
+    return depth;
+  }
+
+  public long nodes() {
+    return nodes;
+  }
+
+  public double millis() {
+    return nanos / 1e6;
+  }
+
+  /**
+   * score() returns the score of the chosen move, as AI.bestMoveHelper()
+   * scores it.
+   */
+  public int score() {
+    return score;
+  }
+
+  /**
+   * nodesPerSecond() returns the search speed, or 0 if no time was taken.
+   */
+  public double nodesPerSecond() {
+    return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+  }
+
+  /**
+   * leafEvals() returns the number of positions evaluated, not counting
+   * those answered by the evaluation cache.
+   */
+  public long leafEvals() {
+    return leafEvals;
+  }
+
+  /**
+   * evalCacheHitRate() returns the fraction of the evaluation cache's probes,
+   * which are made at the leaves of the search, that found their position,
+   * or 0 if there were none.
+   */
+  public double evalCacheHitRate() {
+    return evalProbes == 0 ? 0 : (double) evalHits / evalProbes;
+  }
+
+  /**
+   * tableHitRate() returns the fraction of transposition table probes that
+   * found their position, or 0 if there were none.
+   */
+  public double tableHitRate() {
+    return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+  }
+
+  /**
+   * tableCutoffs() returns the number of nodes the transposition table
+   * answered without a search.
+   */
+  public long tableCutoffs() {
+    return tableCutoffs;
+  }
+
+  /**
+   * cutoffs() returns the number of nodes that stopped searching their
+   * moves early, because one was good enough.
+   */
+  public long cutoffs() {
+    return cutoffs;
+  }
+
+  /**
+   * firstMoveCutoffRate() returns the fraction of cutoffs caused by the
+   * first move searched, or 0 if there were none; the closer to 1, the
+   * better the move ordering.
+   */
+  public double firstMoveCutoffRate() {
+    return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+  }
+
+  /**
+   * branchingFactor() returns the average number of moves searched at a
+   * node whose moves were searched, or 0 if there were none.
+   */
+  public double branchingFactor() {
+    return expanded == 0 ? 0 : (double) movesSearched / expanded;
+  }
+
+  /**
+   * effectiveBranchingFactor() returns how many times as many nodes the
+   * deepest iteration finished visited as the one before it, or 0 unless
+   * the search finished two iterations.
+   */
+  public double effectiveBranchingFactor() {
+    return previousIterationNodes == 0 ? 0
+        : (double) iterationNodes / previousIterationNodes;
+  }
+
+  /**
+   * principalVariation() returns the line of play the search expects,
+   * starting with the move chosen, as far as the transposition table
+   * remembers it and at most as deep as the search went.
+   */
+  public Move[] principalVariation() {
+    Move[] line = new Move[principalVariation.length];
+    for (int i = 0; i < line.length; i++) {
+      line[i] = BitBoard.decode(principalVariation[i]);
+    }
+    return line;
+  }
+
+  /**
+   * toJson() returns every figure as a JSON object on one line, with the
+   * principal variation as an array of Move.toString()s.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{");
+    json.append("\"depth\":").append(depth);
+    json.append(",\"nodes\":").append(nodes);
+    json.append(",\"millis\":").append(round(millis()));
+    json.append(",\"nodesPerSecond\":").append(Math.round(nodesPerSecond()));
+    json.append(",\"score\":").append(score);
+    json.append(",\"leafEvals\":").append(leafEvals);
+    json.append(",\"evalCacheHitRate\":").append(round(evalCacheHitRate()));
+    json.append(",\"tableHitRate\":").append(round(tableHitRate()));
+    json.append(",\"tableCutoffs\":").append(tableCutoffs);
+    json.append(",\"cutoffs\":").append(cutoffs);
+    json.append(",\"firstMoveCutoffRate\":")
+        .append(round(firstMoveCutoffRate()));
+    json.append(",\"branchingFactor\":").append(round(branchingFactor()));
+    json.append(",\"effectiveBranchingFactor\":")
+        .append(round(effectiveBranchingFactor()));
+    json.append(",\"pv\":[");
+    for (int i = 0; i < principalVariation.length; i++) {
+      json.append(i == 0 ? "" : ",")
+          .append(quote(BitBoard.decode(principalVariation[i]).toString()));
+    }
+    return json.append("]}").toString();
+  }
+
+  /**
+   * quote() returns a string as a JSON string, in quotes, with any quote,
+   * backslash or control character in it escaped.
+   *
+   * @param s the string
+   * @return the JSON string
+   */
+  public static String quote(String s) {
+    StringBuilder json = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      }
+      else if (c < ' ') {
+        json.append(String.format("\\u%04x", (int) c));
+      }
+      else {
+        json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  // Three decimal places are plenty, and keep the lines short.
+  private static double round(double x) {
+    return Math.round(x * 1000) / 1000.0;
+  }
+
+  void record(int depth, long nanos, int score) {
+    this.depth = depth;
+    this.nanos = nanos;
+    this.score = score;
+  }
+
+  /**
+   * add() adds the counts of a finished search context to these.
+   */
+  void add(SearchContext context) {
+    nodes += context.nodes;
+    leafEvals += context.leafEvals;
+    evalProbes += context.evalProbes;
+    evalHits += context.evalHits;
+    tableProbes += context.tableProbes;
+    tableHits += context.tableHits;
+    tableCutoffs += context.tableCutoffs;
+    cutoffs += context.ordering.cutoffs;
+    firstMoveCutoffs += context.ordering.firstMoveCutoffs;
+    expanded += context.expanded;
+    movesSearched += context.movesSearched;
+  }
+
+  /**
+   * iteration() records the nodes an iteration visited, once it finishes.
+   */
+  void iteration(long nodes) {
+    previousIterationNodes = iterationNodes;
+    iterationNodes = nodes;
+  }
+
+}
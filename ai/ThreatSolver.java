@@ -0,0 +1,311 @@
+package ai;
+
+import player.Move;
+
+/**
+ * A ThreatSolver looks for forced networks in the step-move endgame, far
+ * deeper than a full-width search can, by following threats only. The
+ * attacker plays only moves after which it threatens to complete a network
+ * on its next move; the defender must answer every such threat, so all of
+ * its moves are tried, but most are refuted at once by replaying one of the
+ * threats. A line is only followed while it keeps forcing, which keeps the
+ * tree narrow.
+ *
+ * Every result is a proof under the rules of the game: after a move, the
+ * mover loses if the opponent has a network and wins if only it has one.
+ * The attacker's moves are pruned freely, since one winning line is enough,
+ * so a solver that finds nothing has proved nothing. A search stopped by its
+ * deadline also reports nothing.
+ *
+ * Like a SearchContext, a ThreatSolver belongs to one thread; it makes moves
+ * on the board it is given and takes them back before returning.
+ */
+public class ThreatSolver {
+
+  /**
+   * The most moves of its own the attacker may take to win.
+   */
+  public final static int MAX_MOVES = 5;
+
+  // How many nodes to visit between looks at the clock.
+  private final static int CLOCK_INTERVAL = 1024;
+
+  private BitBoard board;
+  // System.nanoTime() at which to give up, or 0 to search until done.
+  private long deadline;
+  private boolean aborted;
+  private long nodes;
+  // The first move of the win found by findWin(), packed.
+  private int winningMove;
+  private int depth;
+
+  // A move list and a threat list for each level of the search, created the
+  // first time the level is reached; each attack and each defense below it
+  // is a level deeper than the one before.
+  private final int[][] moves = new int[2 * MAX_MOVES + 2][];
+  private final int[][] threats = new int[2 * MAX_MOVES + 2][];
+
+  /**
+   * isTactical() tells whether a position is one the solver is worth trying
+   * on: every chip is on the board, and one side has a chip in each of its
+   * goals.
+   */
+  public static boolean isTactical(BitBoard board) {
+    if (board.numberChips(Board.WHITE) < 10
+        || board.numberChips(Board.BLACK) < 10) {
+      return false;
+    }
+    for (int color = Board.BLACK; color <= Board.WHITE; color += 2) {
+      long own = board.pieces(color);
+      if ((own & BitBoard.lowGoal(color)) != 0
+          && (own & BitBoard.highGoal(color)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * findWin() looks for a forced network for color, trying wins in one move
+   * of its own, then two, and so on up to maxMoves.
+   *
+   * @param board the position, which is left as it was
+   * @param color the color to move
+   * @param maxMoves the most moves color may take, at most MAX_MOVES
+   * @param deadline System.nanoTime() at which to give up, or 0 for none
+   * @return the first move of a forced win, or null if none was found
+   */
+  public Move findWin(BitBoard board, int color, int maxMoves, long deadline) {
+    start(board, deadline);
+    for (int n = 1; n <= Math.min(maxMoves, MAX_MOVES) && !aborted; n++) {
+      if (attack(color, n, 0)) {
+        depth = n;
+        return BitBoard.decode(winningMove);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * provesLoss() tries to prove that color, to move, cannot stop its
+   * opponent completing a network within maxMoves of the opponent's moves.
+   * Only positions in which the opponent already threatens a network are
+   * tried.
+   *
+   * @param board the position, which is left as it was
+   * @param color the color to move
+   * @param maxMoves the most moves the opponent may take, at most MAX_MOVES
+   * @param deadline System.nanoTime() at which to give up, or 0 for none
+   * @return true if the loss was proved
+   */
+  public boolean provesLoss(BitBoard board, int color, int maxMoves,
+      long deadline) {
+    start(board, deadline);
+    int[] list = moves(0);
+    int count = findThreats(-color, list, board.generateMoves(-color, list),
+        threats(0));
+    for (int n = 1; count > 0 && n <= Math.min(maxMoves, MAX_MOVES)
+        && !aborted; n++) {
+      if (defenseFails(color, n, 0, count)) {
+        depth = n;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * nodes() returns the number of moves the last call made.
+   */
+  public long nodes() {
+    return nodes;
+  }
+
+  /**
+   * depth() returns the number of moves the attacker needs in the last win
+   * or loss proved.
+   */
+  public int depth() {
+    return depth;
+  }
+
+  private void start(BitBoard board, long deadline) {
+    this.board = board;
+    this.deadline = deadline;
+    aborted = false;
+    nodes = 0;
+    depth = 0;
+    winningMove = BitBoard.NO_MOVE;
+  }
+
+  /**
+   * visit() counts a move made and reports whether the search should stop.
+   */
+  private boolean visit() {
+    nodes++;
+    if (deadline != 0 && !aborted && nodes % CLOCK_INTERVAL == 0
+        && System.nanoTime() - deadline >= 0) {
+      aborted = true;
+    }
+    return aborted;
+  }
+
+  private int[] moves(int level) {
+    if (moves[level] == null) {
+      moves[level] = new int[BitBoard.MAX_MOVES];
+    }
+    return moves[level];
+  }
+
+  private int[] threats(int level) {
+    if (threats[level] == null) {
+      threats[level] = new int[BitBoard.MAX_MOVES];
+    }
+    return threats[level];
+  }
+
+  /**
+   * attack() tells whether color, to move, can force a network within n of
+   * its own moves.
+   */
+  private boolean attack(int color, int n, int level) {
+    int[] list = moves(level);
+    int count = board.generateMoves(color, list);
+    int[] wins = threats(level);
+    if (findThreats(color, list, count, wins) > 0) {
+      if (level == 0) {
+        winningMove = wins[0];
+      }
+      return true;
+    }
+    if (n == 1) {
+      return false;
+    }
+    long goals = BitBoard.goals(color);
+    for (int i = 0; i < count; i++) {
+      int m = list[i];
+      int to = m & 63;
+      board.makeMove(color, m);
+      boolean won = false;
+      if (!visit() && board.connectionCount(to) >= needed(goals, to)
+          && !board.hasNetwork(-color)) {
+        int[] replies = moves(level + 1);
+        int threatCount = findThreats(color, replies,
+            board.generateMoves(color, replies), threats(level + 1));
+        won = threatCount > 0
+            && defenseFails(-color, n - 1, level + 1, threatCount);
+      }
+      board.unmakeMove(color, m);
+      if (aborted) {
+        return false;
+      }
+      if (won) {
+        if (level == 0) {
+          winningMove = m;
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * defenseFails() tells whether every move of the defender, to move, lets
+   * its opponent complete a network within n moves. threats(level) holds
+   * the opponent's threats in the position, as found by findThreats().
+   */
+  private boolean defenseFails(int defender, int n, int level,
+      int threatCount) {
+    int attacker = -defender;
+    int[] list = moves(level);
+    int count = board.generateMoves(defender, list);
+    for (int i = 0; i < count; i++) {
+      int m = list[i];
+      board.makeMove(defender, m);
+      boolean lost;
+      if (visit()) {
+        lost = false;
+      }
+      else if (board.hasNetwork(attacker)) {
+        // Stepping away unblocked the attacker's network.
+        lost = true;
+      }
+      else if (board.hasNetwork(defender)) {
+        lost = false;
+      }
+      else {
+        lost = threatStands(attacker, threats(level), threatCount)
+            || attack(attacker, n, level + 1);
+      }
+      board.unmakeMove(defender, m);
+      if (!lost || aborted) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * threatStands() tells whether one of the given threats still completes a
+   * network after the defender's move. The defender cannot touch the
+   * attacker's chips or clusters, so a threat is still a valid move unless
+   * the defender took its square.
+   */
+  private boolean threatStands(int attacker, int[] wins, int count) {
+    long occupied = board.pieces(Board.WHITE) | board.pieces(Board.BLACK);
+    for (int i = 0; i < count; i++) {
+      int m = wins[i];
+      if ((occupied & (1L << (m & 63))) != 0) {
+        continue;
+      }
+      board.makeMove(attacker, m);
+      visit();
+      boolean won = !board.hasNetwork(-attacker) && board.hasNetwork(attacker);
+      board.unmakeMove(attacker, m);
+      if (won) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * findThreats() copies into wins the moves in list which complete a
+   * network for color. Only moves whose chip joins the network are looked
+   * for: the chip must end up connected to enough chips, and color must
+   * then have a chip in both goals.
+   *
+   * @return the number of moves copied
+   */
+  private int findThreats(int color, int[] list, int count, int[] wins) {
+    long own = board.pieces(color);
+    long low = BitBoard.lowGoal(color), high = BitBoard.highGoal(color);
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int m = list[i];
+      int to = m & 63;
+      long after = own | 1L << to;
+      if (m >>> 12 == Move.STEP) {
+        after &= ~(1L << ((m >>> 6) & 63));
+      }
+      if ((after & low) == 0 || (after & high) == 0) {
+        continue;
+      }
+      board.makeMove(color, m);
+      visit();
+      if (board.connectionCount(to) >= needed(low | high, to)
+          && !board.hasNetwork(-color) && board.hasNetwork(color)) {
+        wins[found++] = m;
+      }
+      board.unmakeMove(color, m);
+    }
+    return found;
+  }
+
+  // A chip in a network is connected to at least two others, or one if it
+  // is in a goal.
+  private static int needed(long goals, int s) {
+    return (goals & (1L << s)) != 0 ? 1 : 2;
+  }
+
+}
@@ -0,0 +1,90 @@
+package ai;
+
+/**
+ * A TimeManager decides how much of its time limit a timed search should
+ * spend on a move, and predicts what the next iteration of a deepening
+ * search will cost.
+ *
+ * The limit is a hard one: AI.deepen() abandons an iteration still running
+ * when it passes. Within it, a move is allocated a share by how critical
+ * its position is. A position in which either side can complete a network
+ * with its next move gets the whole limit; one in which either side has a
+ * path of NEAR_NETWORK chips or more, or which is past the add moves, gets
+ * SHARP_SHARE; the quiet positions of the opening get QUIET_SHARE.
+ *
+ * A search given an allocation starts no iteration once it is spent, nor
+ * one predicted to run past the limit, whose result would be thrown away.
+ * Its cost is predicted from the last iteration's time and the effective
+ * branching factor. Alpha-beta searches grow by much more from an even
+ * depth to an odd one than from odd to even, so the factor used is the one
+ * measured over the last step of the same kind: the growth from the
+ * iteration before last to the last is taken from the two before that.
+ */
+public class TimeManager {
+
+  /**
+   * The shares of the time limit given to quiet and sharp positions.
+   */
+  public final static double QUIET_SHARE = 0.5, SHARP_SHARE = 0.8;
+
+  /**
+   * A path this many chips long is one short of the shortest network.
+   */
+  public final static int NEAR_NETWORK = 5;
+
+  // The growth assumed before two iterations have been timed, and the most
+  // ever assumed.
+  final static double DEFAULT_GROWTH = 8, MAX_GROWTH = 64;
+
+  private final ThreatSolver solver = new ThreatSolver();
+
+  /**
+   * allocate() returns how long to spend on a move.
+   *
+   * @param board the position
+   * @param color the color to move
+   * @param limitMillis the hard limit in milliseconds
+   * @return the allocation in milliseconds, at most limitMillis
+   */
+  public long allocate(BitBoard board, int color, long limitMillis) {
+    return (long) (limitMillis * share(board, color));
+  }
+
+  /**
+   * share() returns the share of the limit a position deserves.
+   *
+   * @param board the position
+   * @param color the color to move
+   * @return 1, SHARP_SHARE or QUIET_SHARE
+   */
+  public double share(BitBoard board, int color) {
+    if (solver.findWin(board, color, 1, 0) != null
+        || solver.findWin(board, -color, 1, 0) != null) {
+      return 1;
+    }
+    // Black places its last chip after white does.
+    if (board.numberChips(Board.BLACK) >= 10
+        || board.longestPathLength(Board.WHITE) >= NEAR_NETWORK
+        || board.longestPathLength(Board.BLACK) >= NEAR_NETWORK) {
+      return SHARP_SHARE;
+    }
+    return QUIET_SHARE;
+  }
+
+  /**
+   * predict() estimates how long the next iteration of a deepening search
+   * will take.
+   *
+   * @param nanos the time the last iteration took
+   * @param nodes the nodes the last iteration visited
+   * @param previous the nodes the iteration before it visited, or 0
+   * @param older the nodes the iteration before that visited, or 0
+   * @return the predicted time in nanoseconds
+   */
+  static long predict(long nanos, long nodes, long previous, long older) {
+    double growth = older > 0 ? (double) previous / older
+        : previous > 0 ? (double) nodes / previous : DEFAULT_GROWTH;
+    return (long) (nanos * Math.min(Math.max(growth, 1), MAX_GROWTH));
+  }
+
+}
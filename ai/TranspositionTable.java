@@ -0,0 +1,173 @@
+package ai;
+
+/**
+ * A TranspositionTable remembers the results of earlier searches, keyed by
+ * the Zobrist hash of the position searched. It has a fixed, power-of-two
+ * number of slots; each hash maps to exactly one slot, and a
+ * ReplacementPolicy decides which entry wins when two hashes collide.
+ *
+ * AI.tableKey() hashes a position's canonical form, so equivalent positions
+ * share an entry; the search stores best moves as they are on the
+ * canonical board.
+ *
+ * Scores are stored as AI.bestMoveHelper() computes them, i.e. from the AI
+ * player's point of view, so the key passed in should tell apart both the
+ * side to move and the AI's color (see AI.bestMoveHelper()). Wins and
+ * losses are stored counting moves from the stored position rather than
+ * from the root.
+ *
+ * A table may be shared by several threads searching at once, as
+ * ParallelSearch's workers share one, without locking. As in EvalCache,
+ * each slot holds an entry packed into one long and the key XORed with it;
+ * probe() only accepts a slot whose two words still XOR to its key, so an
+ * entry torn by two threads writing it at once reads as a miss. probe()
+ * returns the entry itself, read once, for depth(), bound(), score() and
+ * move() to unpack.
+ */
+public class TranspositionTable {
+
+  /**
+   * What a stored score says about the true score of its position.
+   */
+  public final static int EXACT = 0, LOWER = 1, UPPER = 2;
+
+  public final static int DEFAULT_SIZE = 1 << 18;
+
+  /**
+   * probe() returns MISS when the position is not in the table.
+   */
+  public final static long MISS = 0;
+
+  /**
+   * ALWAYS lets the newest result overwrite its slot. DEPTH_PREFERRED keeps
+   * the deeper of the two results, unless the stored one is left over from
+   * an earlier call to newSearch().
+   */
+  public enum ReplacementPolicy {
+    ALWAYS, DEPTH_PREFERRED
+  }
+
+  // entries[2 * i] is key ^ entry and entries[2 * i + 1] is the entry; see
+  // pack(). An empty slot is 0, which no entry is.
+  private final long[] entries;
+  private final int mask;
+  private final ReplacementPolicy policy;
+  private int generation = 1;
+
+  public TranspositionTable() {
+    this(DEFAULT_SIZE, ReplacementPolicy.DEPTH_PREFERRED);
+  }
+
+  /**
+   * Creates a table with the given number of slots.
+   *
+   * @param size the number of slots, rounded up to a power of two
+   * @param policy which entry keeps a slot when two positions collide
+   */
+  public TranspositionTable(int size, ReplacementPolicy policy) {
+    int slots = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+    entries = new long[2 * slots];
+    mask = slots - 1;
+    this.policy = policy;
+  }
+
+  public int size() {
+    return entries.length / 2;
+  }
+
+  /**
+   * newSearch() marks every entry currently stored as belonging to an
+   * earlier search, so DEPTH_PREFERRED lets new results replace them.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & 0xFF;
+    if (generation == 0) {
+      generation = 1;
+    }
+  }
+
+  /**
+   * clear() empties the table.
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = 0;
+    }
+  }
+
+  // An entry packs its score (the high 32 bits), best move (14 bits),
+  // generation (8 bits, never 0), bound (2 bits) and depth (the low 8 bits).
+  private static long pack(int score, int move, int depth, int bound,
+      int generation) {
+    return (long) score << 32 | (long) (move & 0x3FFF) << 18
+        | generation << 10 | bound << 8 | (depth & 0xFF);
+  }
+
+  private static int generation(long entry) {
+    return (int) (entry >>> 10) & 0xFF;
+  }
+
+  /**
+   * probe() looks up the entry for the given key.
+   *
+   * @param key the position's hash
+   * @return the entry, to pass to depth(), bound(), score() and move(), or
+   *         MISS if the position is not in the table
+   */
+  public long probe(long key) {
+    int slot = 2 * ((int) key & mask);
+    long entry = entries[slot + 1];
+    if (entry == 0 || (entries[slot] ^ entry) != key) {
+      return MISS;
+    }
+    return entry;
+  }
+
+  public static int depth(long entry) {
+    return (int) entry & 0xFF;
+  }
+
+  public static int bound(long entry) {
+    return (int) (entry >>> 8) & 3;
+  }
+
+  public static int score(long entry) {
+    return (int) (entry >> 32);
+  }
+
+  /**
+   * move() returns an entry's best move, packed as by BitBoard.encode(), or
+   * BitBoard.NO_MOVE.
+   */
+  public static int move(long entry) {
+    return (int) (entry >>> 18) & 0x3FFF;
+  }
+
+  /**
+   * store() records the result of searching a position, subject to the
+   * table's ReplacementPolicy.
+   *
+   * @param key the position's hash
+   * @param depth the depth the position was searched to
+   * @param bound EXACT, LOWER or UPPER
+   * @param score the score found
+   * @param move the best move found, or BitBoard.NO_MOVE
+   */
+  public void store(long key, int depth, int bound, int score, int move) {
+    int slot = 2 * ((int) key & mask);
+    long old = entries[slot + 1];
+    boolean same = old != 0 && (entries[slot] ^ old) == key;
+    if (policy == ReplacementPolicy.DEPTH_PREFERRED && old != 0 && !same
+        && generation(old) == generation && depth(old) > depth) {
+      return;
+    }
+    if (move == BitBoard.NO_MOVE && same) {
+      // Keep the old best move; it is still the best guess for ordering.
+      move = move(old);
+    }
+    long entry = pack(score, move, depth, bound, generation);
+    entries[slot] = key ^ entry;
+    entries[slot + 1] = entry;
+  }
+
+}
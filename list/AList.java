@@ -0,0 +1,240 @@
+/* AList.java */
+
+package list;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *  An AList is a mutable list ADT backed by a growable array.  Unlike a
+ *  DList, it keeps no node per item:  front(), back(), next() and prev()
+ *  return a new AListNode naming a position in the list, and a for-each
+ *  loop over it creates nothing but its iterator.  Items may also be read
+ *  and written by index with get() and set().
+ *
+ *  An AListNode names a position, as an index does, rather than an item.
+ *  Inserting or removing an item in front of it shifts which item it names,
+ *  and it becomes invalid if the list shrinks past it.
+ **/
+
+public class AList extends List {
+
+  /**
+   *  (inherited)  size is the number of items in the list.
+   *  items holds them in items[0] to items[size - 1]; the rest are null.
+   **/
+
+  protected Object[] items;
+
+  /**
+   *  AList() constructs an empty AList.
+   **/
+  public AList() {
+    this(8);
+  }
+
+  /**
+   *  AList() constructs an empty AList with room for the given number of
+   *  items before it needs to grow.
+   *
+   *  @param capacity the number of items to make room for.
+   **/
+  public AList(int capacity) {
+    items = new Object[Math.max(capacity, 1)];
+    size = 0;
+  }
+
+  /**
+   *  get() returns the item at the given index.
+   *
+   *  @param index the index, from 0 at the front.
+   *  @return the item at index.
+   *  @exception IndexOutOfBoundsException if there is no such item.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public Object get(int index) {
+    check(index, size);
+    return items[index];
+  }
+
+  /**
+   *  set() replaces the item at the given index.
+   *
+   *  @param index the index, from 0 at the front.
+   *  @param item the new item.
+   *  @exception IndexOutOfBoundsException if there is no such item.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void set(int index, Object item) {
+    check(index, size);
+    items[index] = item;
+  }
+
+  /**
+   *  insert() inserts an item so that it has the given index.
+   *
+   *  @param index the index, from 0 at the front to length() at the back.
+   *  @param item is the item to be inserted.
+   *  @exception IndexOutOfBoundsException if index is out of that range.
+   *
+   *  Performance:  runs in O(n) time, where n is the number of items after
+   *  index, or amortized O(1) time at the back.
+   **/
+  public void insert(int index, Object item) {
+    check(index, size + 1);
+    if (size == items.length) {
+      Object[] larger = new Object[2 * items.length];
+      System.arraycopy(items, 0, larger, 0, size);
+      items = larger;
+    }
+    System.arraycopy(items, index, items, index + 1, size - index);
+    items[index] = item;
+    size++;
+  }
+
+  /**
+   *  remove() removes the item at the given index.
+   *
+   *  @param index the index, from 0 at the front.
+   *  @return the item removed.
+   *  @exception IndexOutOfBoundsException if there is no such item.
+   *
+   *  Performance:  runs in O(n) time, where n is the number of items after
+   *  index, or O(1) time at the back.
+   **/
+  public Object remove(int index) {
+    check(index, size);
+    Object item = items[index];
+    size--;
+    System.arraycopy(items, index + 1, items, index, size - index);
+    items[size] = null;
+    return item;
+  }
+
+  /**
+   *  clear() removes every item from this AList, keeping its capacity.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   **/
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      items[i] = null;
+    }
+    size = 0;
+  }
+
+  /**
+   *  insertFront() inserts an item at the front of this AList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   **/
+  public void insertFront(Object item) {
+    insert(0, item);
+  }
+
+  /**
+   *  insertBack() inserts an item at the back of this AList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  runs in amortized O(1) time.
+   **/
+  public void insertBack(Object item) {
+    insert(size, item);
+  }
+
+  /**
+   *  front() returns the node at the front of this AList.  If the AList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the front of this AList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode front() {
+    return node(0);
+  }
+
+  /**
+   *  back() returns the node at the back of this AList.  If the AList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the back of this AList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode back() {
+    return node(size - 1);
+  }
+
+  /**
+   *  node() returns a node naming the given index, which is invalid if there
+   *  is no item there.
+   **/
+  AListNode node(int index) {
+    return new AListNode(index >= 0 && index < size ? this : null, index);
+  }
+
+  /**
+   *  toString() returns a String representation of this AList, in the same
+   *  form as a DList's.
+   *
+   *  @return a String representation of this AList.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[  ");
+    for (int i = 0; i < size; i++) {
+      result.append(items[i]).append("  ");
+    }
+    return result.append("]").toString();
+  }
+
+  /**
+   *  iterator() returns an iterator over the items by index, which creates
+   *  no nodes.  Its remove() removes the item last returned.
+   **/
+  @Override
+  public Iterator<Object> iterator() {
+    return new Iterator<Object>() {
+      private int next;
+      private int last = -1;
+
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      public Object next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        last = next++;
+        return items[last];
+      }
+
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        AList.this.remove(last);
+        next = last;
+        last = -1;
+      }
+    };
+  }
+
+  private static void check(int index, int bound) {
+    if (index < 0 || index >= bound) {
+      throw new IndexOutOfBoundsException("index " + index + ", bound "
+                                          + bound);
+    }
+  }
+
+}
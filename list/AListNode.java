@@ -0,0 +1,157 @@
+/* AListNode.java */
+
+package list;
+
+/**
+ *  An AListNode names a position in an AList.  AList creates them as they
+ *  are asked for, so two nodes may name the same position; see AList.
+ **/
+
+public class AListNode extends ListNode {
+
+  /**
+   *  (inherited)  myList references the AList this node names a position
+   *  in, or is null if the node is invalid.
+   *  (inherited)  item is unused; the item lives in the AList's array.
+   *  index is the position this node names.
+   **/
+
+  protected int index;
+
+  /**
+   *  AListNode() constructor.
+   *  @param l the list this node is in, or null for an invalid node.
+   *  @param i the position this node names.
+   */
+  AListNode(AList l, int i) {
+    myList = l;
+    index = i;
+  }
+
+  /**
+   *  isValidNode returns true if this node is valid; false otherwise.  A
+   *  node is invalid once it has been removed, or if the list has shrunk
+   *  past it.
+   *
+   *  @return true if this node is valid; false otherwise.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public boolean isValidNode() {
+    return myList != null && index < myList.size;
+  }
+
+  /**
+   *  item() returns the item at this node's position.  If this node is
+   *  invalid, throws an exception.
+   *
+   *  @return the item stored at this position.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public Object item() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("item() called on invalid node");
+    }
+    return ((AList) myList).items[index];
+  }
+
+  /**
+   *  setItem() sets the item at this node's position to "item".  If this
+   *  node is invalid, throws an exception.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public void setItem(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("setItem() called on invalid node");
+    }
+    ((AList) myList).items[index] = item;
+  }
+
+  /**
+   *  next() returns a node naming the following position.  If this node is
+   *  invalid, throws an exception.
+   *
+   *  @return the node following this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode next() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("next() called on invalid node");
+    }
+    return ((AList) myList).node(index + 1);
+  }
+
+  /**
+   *  prev() returns a node naming the preceding position.  If this node is
+   *  invalid, throws an exception.
+   *
+   *  @return the node preceding this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode prev() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("prev() called on invalid node");
+    }
+    return ((AList) myList).node(index - 1);
+  }
+
+  /**
+   *  insertAfter() inserts an item immediately following this node.  If this
+   *  node is invalid, throws an exception.
+   *
+   *  @param item the item to be inserted.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(n) time, where n is the number of items after
+   *  this node.
+   */
+  public void insertAfter(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("insertAfter() called on invalid node");
+    }
+    ((AList) myList).insert(index + 1, item);
+  }
+
+  /**
+   *  insertBefore() inserts an item immediately preceding this node, which
+   *  moves along to go on naming its item.  If this node is invalid, throws
+   *  an exception.
+   *
+   *  @param item the item to be inserted.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(n) time, where n is the number of items after
+   *  this node.
+   */
+  public void insertBefore(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("insertBefore() called on invalid node");
+    }
+    ((AList) myList).insert(index, item);
+    index++;
+  }
+
+  /**
+   *  remove() removes this node's item from its AList, and makes this node
+   *  invalid.  If this node is invalid, throws an exception.
+   *
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(n) time, where n is the number of items after
+   *  this node.
+   */
+  public void remove() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("remove() called on invalid node");
+    }
+    ((AList) myList).remove(index);
+    myList = null;
+  }
+
+}
@@ -0,0 +1,188 @@
+/* IntList.java */
+
+package list;
+
+/**
+ *  An IntList is a growable list of ints, stored in an int array with no
+ *  object per item.  It is the primitive counterpart of AList, for lists of
+ *  numbers such as packed board squares, and so it does not extend List,
+ *  whose items are Objects.  Used as a stack, with add(), removeBack() and
+ *  truncate(), it allocates nothing once it has grown large enough.
+ **/
+
+public class IntList {
+
+  /**
+   *  items holds the list's items in items[0] to items[size - 1].
+   **/
+
+  private int[] items;
+  private int size;
+
+  /**
+   *  IntList() constructs an empty IntList.
+   **/
+  public IntList() {
+    this(8);
+  }
+
+  /**
+   *  IntList() constructs an empty IntList with room for the given number
+   *  of items before it needs to grow.
+   *
+   *  @param capacity the number of items to make room for.
+   **/
+  public IntList(int capacity) {
+    items = new int[Math.max(capacity, 1)];
+  }
+
+  /**
+   *  size() returns the length of this IntList.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public int size() {
+    return size;
+  }
+
+  /**
+   *  isEmpty() returns true if this IntList is empty, false otherwise.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   *  get() returns the item at the given index.
+   *
+   *  @param index the index, from 0 at the front.
+   *  @exception IndexOutOfBoundsException if there is no such item.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public int get(int index) {
+    check(index);
+    return items[index];
+  }
+
+  /**
+   *  set() replaces the item at the given index.
+   *
+   *  @param index the index, from 0 at the front.
+   *  @param item the new item.
+   *  @exception IndexOutOfBoundsException if there is no such item.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void set(int index, int item) {
+    check(index);
+    items[index] = item;
+  }
+
+  /**
+   *  add() appends an item at the back of this IntList.
+   *
+   *  Performance:  runs in amortized O(1) time.
+   **/
+  public void add(int item) {
+    if (size == items.length) {
+      int[] larger = new int[2 * items.length];
+      System.arraycopy(items, 0, larger, 0, size);
+      items = larger;
+    }
+    items[size++] = item;
+  }
+
+  /**
+   *  removeBack() removes the item at the back of this IntList.
+   *
+   *  @return the item removed.
+   *  @exception IndexOutOfBoundsException if the list is empty.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public int removeBack() {
+    check(size - 1);
+    return items[--size];
+  }
+
+  /**
+   *  truncate() removes every item from the given index on.
+   *
+   *  @param length the length to cut this IntList down to; no more than
+   *  size().
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void truncate(int length) {
+    if (length < 0 || length > size) {
+      throw new IndexOutOfBoundsException("length " + length + ", size "
+                                          + size);
+    }
+    size = length;
+  }
+
+  /**
+   *  clear() removes every item from this IntList, keeping its capacity.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   *  indexOf() returns the index of the first occurrence of item, or -1 if
+   *  there is none.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   **/
+  public int indexOf(int item) {
+    for (int i = 0; i < size; i++) {
+      if (items[i] == item) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   *  contains() returns true if item is in this IntList, false otherwise.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   **/
+  public boolean contains(int item) {
+    return indexOf(item) >= 0;
+  }
+
+  /**
+   *  toArray() returns a new array holding the items in order.
+   **/
+  public int[] toArray() {
+    int[] copy = new int[size];
+    System.arraycopy(items, 0, copy, 0, size);
+    return copy;
+  }
+
+  /**
+   *  toString() returns a String representation of this IntList, in the
+   *  same form as a DList's.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[  ");
+    for (int i = 0; i < size; i++) {
+      result.append(items[i]).append("  ");
+    }
+    return result.append("]").toString();
+  }
+
+  private void check(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size "
+                                          + size);
+    }
+  }
+
+}
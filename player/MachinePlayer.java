@@ -2,25 +2,80 @@
 
 package player;
 
+import java.io.PrintStream;
+
 import ai.AI;
+import ai.BitBoard;
 import ai.Board;
+import ai.EvalCache;
+import ai.OpeningBook;
+import ai.ParallelSearch;
+import ai.Ponder;
+import ai.SearchStats;
+import ai.ThreatSolver;
+import ai.TimeManager;
+import ai.TranspositionTable;
 
 /**
  *  An implementation of an automatic Network player.  Keeps track of moves
  *  made by both players.  Can select a move for itself.
  */
 public class MachinePlayer extends Player {
-  private Board board = new Board();
+  // Milliseconds the one-parameter constructor's player may spend per move.
+  // The tournament allows five seconds; the rest is slack for the referee.
+  public final static long DEFAULT_TIME_LIMIT = 4500;
+  // The threat solver may use up to 1/SOLVER_SHARE of a timed move, or
+  // SOLVER_MILLIS of a move searched to a fixed depth (if setThreatSolver()
+  // turned it on).
+  private final static int SOLVER_SHARE = 4;
+  private final static long SOLVER_MILLIS = 250;
+
+  private BitBoard board = new BitBoard();
   private int color, opponentColor, searchDepth;
+  // Per-move time budget in milliseconds, or 0 to search to searchDepth.
+  private long timeLimit;
+  // Decides how much of the time limit each move gets, or null to give each
+  // all of it; and the milliseconds the last move was given.
+  private TimeManager timeManager = new TimeManager();
+  private long allocated;
+  // Kept across moves, so later searches can reuse earlier results.
+  private TranspositionTable table = new TranspositionTable();
+  private EvalCache evalCache = new EvalCache();
+  // Moves played without searching while the game is in the book, or null.
+  private OpeningBook book;
+  // Looks for forced networks first in tactical endgames, or null.
+  private ThreatSolver solver;
+  // Searches on several threads when setThreads() asks for more than one.
+  private ParallelSearch parallel;
+  // What the search for the last move did.
+  private SearchStats lastSearch = new SearchStats();
+  // Where chooseMove() writes a line of JSON about each move, or null, and
+  // the name it gives this player there.
+  private PrintStream searchLog;
+  private String logName;
+  // Moves made in the game so far, by both players.
+  private int ply;
+  // Searches on the opponent's time when setPondering() turns it on, and
+  // whether the opponent then played the reply it was searching.
+  private Ponder ponder;
+  private boolean ponderHit;
 
   // Creates a machine player with the given color.  Color is either 0 (black)
-  // or 1 (white).  (White has the first move.)
+  // or 1 (white).  (White has the first move.)  It plays from
+  // OpeningBook.standard() while it can, looks for forced networks with the
+  // threat solver in tactical endgames, and otherwise searches as deep as it
+  // can within DEFAULT_TIME_LIMIT.
   public MachinePlayer(int color) {
     this(color, 2);
+    timeLimit = DEFAULT_TIME_LIMIT;
+    book = OpeningBook.standard();
+    solver = new ThreatSolver();
   }
 
   // Creates a machine player with the given color and search depth.  Color is
-  // either 0 (black) or 1 (white).  (White has the first move.)
+  // either 0 (black) or 1 (white).  (White has the first move.)  It searches
+  // every move to exactly that depth, so its moves depend on nothing else;
+  // setOpeningBook(), setThreatSolver() and setTimeLimit() change that.
   public MachinePlayer(int color, int searchDepth) {
     if (color == 0) {
       this.color = Board.BLACK;
@@ -33,20 +88,262 @@ public class MachinePlayer extends Player {
     this.searchDepth = searchDepth;
   }
 
+  // Sets the time budget for each chooseMove() in milliseconds.  A positive
+  // limit makes the player deepen its search until the time is up; 0 makes it
+  // search to exactly its search depth.
+  public void setTimeLimit(long millis) {
+    timeLimit = millis;
+  }
+
+  // Sets the number of threads chooseMove() searches with.  With one thread
+  // (the default) the search runs on the calling thread.
+  public void setThreads(int threads) {
+    stopPondering();
+    if (parallel != null) {
+      parallel.shutdown();
+      parallel = null;
+    }
+    if (threads > 1) {
+      parallel = new ParallelSearch(threads);
+      parallel.setEvalCache(evalCache);
+    }
+  }
+
+  // Turns time management on or off.  With it on (the default), a timed
+  // search may spend all of the time limit only on critical positions,
+  // where either side can complete a network next move; it stops deepening
+  // sooner on quiet ones, and starts no iteration it predicts will not
+  // finish within the limit.  With it off, every search deepens until the
+  // limit is up.  See TimeManager.
+  public void setTimeManagement(boolean on) {
+    timeManager = on ? new TimeManager() : null;
+  }
+
+  // Returns whether time management is on.
+  public boolean getTimeManagement() {
+    return timeManager != null;
+  }
+
+  // Returns the milliseconds the last move chooseMove() returned was given:
+  // its share of the time limit, the threat solver's budget, or 0 for a book
+  // move or a search to a fixed depth.
+  public long getLastAllocation() {
+    return allocated;
+  }
+
+  // Returns the number of threads chooseMove() searches with.
+  public int getThreads() {
+    return parallel == null ? 1 : parallel.threads();
+  }
+
+  // Replaces the evaluation cache with an empty one of the given number of
+  // slots (rounded up to a power of two), or none if slots is 0.
+  public void setEvalCacheSize(int slots) {
+    stopPondering();
+    evalCache = slots > 0 ? new EvalCache(slots) : null;
+    if (parallel != null) {
+      parallel.setEvalCache(evalCache);
+    }
+  }
+
+  // Returns the evaluation cache, whose counters cover the whole game so far,
+  // or null if there is none.
+  public EvalCache getEvalCache() {
+    return evalCache;
+  }
+
+  // Sets the opening book chooseMove() plays from while the position is in
+  // it, or null to always search.  A player made with a search depth starts
+  // with none, and one made without with OpeningBook.standard().
+  public void setOpeningBook(OpeningBook book) {
+    this.book = book;
+  }
+
+  // Returns the opening book, or null if there is none.
+  public OpeningBook getOpeningBook() {
+    return book;
+  }
+
+  // Turns the threat solver on or off.  With it on, chooseMove() first looks
+  // for a forced network in tactical positions (see ThreatSolver) and plays
+  // it without searching.  A player made with a search depth starts with it
+  // off, and one made without with it on.
+  public void setThreatSolver(boolean on) {
+    solver = on ? new ThreatSolver() : null;
+  }
+
+  // Returns whether the threat solver is on.
+  public boolean getThreatSolver() {
+    return solver != null;
+  }
+
+  // Returns what the search behind the last move chooseMove() returned did;
+  // all 0 if the move came from the book or the threat solver.
+  public SearchStats getLastSearch() {
+    return lastSearch;
+  }
+
+  // Turns pondering on or off.  A pondering player goes on searching on a
+  // background thread after chooseMove() returns: the position after the
+  // reply its search expects, or every reply if it has no such reply in
+  // mind.  If the opponent plays the expected reply, the next chooseMove()
+  // carries on with that search, so it gets the opponent's thinking time as
+  // well as its own; otherwise the search stops at once, and the next one
+  // starts from what it left in the transposition table.  Only a player
+  // with a time limit and one thread ponders.  Pondering takes a processor
+  // the opponent may want, so it only pays when each player has its own.
+  public void setPondering(boolean on) {
+    stopPondering();
+    ponder = on ? new Ponder() : null;
+  }
+
+  // Returns whether pondering is on.
+  public boolean getPondering() {
+    return ponder != null;
+  }
+
+  // Makes chooseMove() write a line of JSON to log for each move it chooses,
+  // or stops it if log is null.  The line holds the player's name (unless
+  // name is null), the move's number in the game, the color, the move,
+  // where it came from ("book", "solver", "search" or "ponder", for a search
+  // begun while pondering), the time limit, the time the move was given (see
+  // getLastAllocation()) and the time it took in milliseconds, followed by
+  // the fields of SearchStats.toJson().
+  public void setSearchLog(PrintStream log, String name) {
+    searchLog = log;
+    logName = name;
+  }
+
   // Returns a new move by "this" player.  Internally records the move (updates
   // the internal game board) as a move by "this" player.
   public Move chooseMove() {
-    Move move = AI.bestMove(color, board, searchDepth);
-    board.makeMove(color, move);
+    long start = System.nanoTime();
+    Move move = book == null ? null : book.lookup(board, color);
+    String source = "book";
+    allocated = 0;
+    long deadline = start + timeLimit * 1000000;
+    boolean tactical = solver != null && ThreatSolver.isTactical(board);
+    if (move == null && ponderHit && !tactical) {
+      ponderHit = false;
+      move = ponder.finish(target(start), deadline);
+      if (move != null) {
+        lastSearch = ponder.lastStats();
+        makeMove(move, "ponder", start);
+        startPondering();
+        return move;
+      }
+    }
+    stopPondering();
+    if (move == null && tactical) {
+      long budget = timeLimit > 0 ? timeLimit / SOLVER_SHARE : SOLVER_MILLIS;
+      move = solver.findWin(board, color, ThreatSolver.MAX_MOVES, start
+          + budget * 1000000);
+      source = "solver";
+      allocated = budget;
+    }
+    if (move != null) {
+      lastSearch.clear();
+      makeMove(move, source, start);
+      startPondering();
+      return move;
+    }
+    table.newSearch();
+    if (parallel != null) {
+      move = timeLimit > 0
+          ? parallel.bestMoveBefore(color, board, target(start), deadline)
+          : parallel.bestMove(color, board, searchDepth);
+      lastSearch = parallel.lastStats();
+    }
+    else if (timeLimit > 0) {
+      move = AI.bestMoveBefore(color, board, target(start), deadline, table,
+          evalCache, lastSearch);
+    }
+    else {
+      move = AI.bestMove(color, board, searchDepth, table, evalCache,
+          lastSearch);
+    }
+    makeMove(move, "search", start);
+    startPondering();
     return move;
   }
 
+  // Allocates the timed move begun at start its share of the time limit, and
+  // returns the System.nanoTime() after which its search should start no
+  // iteration, or 0 to search until the limit is up.
+  private long target(long start) {
+    allocated = timeLimit;
+    if (timeManager == null) {
+      return 0;
+    }
+    allocated = timeManager.allocate(board, color, timeLimit);
+    return start + allocated * 1000000;
+  }
+
+  // Starts pondering the opponent's reply, if this player ponders and the
+  // game is not over.
+  private void startPondering() {
+    if (ponder == null || timeLimit <= 0 || parallel != null
+        || board.hasNetwork(color) || board.hasNetwork(opponentColor)) {
+      return;
+    }
+    Move[] line = lastSearch.principalVariation();
+    ponder.start(board, color, line.length > 1 ? line[1] : null, table,
+        evalCache);
+  }
+
+  // Stops any pondering, so that the next search's newSearch() does not age
+  // entries the ponder thread is still storing, and the ponder thread stops
+  // changing the table's contents under that search.
+  private void stopPondering() {
+    if (ponder != null) {
+      ponder.stop();
+    }
+    ponderHit = false;
+  }
+
+  // Records a move chosen by chooseMove() and logs it.
+  private void makeMove(Move move, String source, long start) {
+    board.makeMove(color, move);
+    ply++;
+    if (searchLog == null) {
+      return;
+    }
+    StringBuilder line = new StringBuilder("{");
+    if (logName != null) {
+      line.append("\"player\":").append(SearchStats.quote(logName))
+          .append(',');
+    }
+    line.append("\"ply\":").append(ply);
+    line.append(",\"color\":\"").append(color == Board.WHITE ? "white"
+        : "black");
+    line.append("\",\"move\":\"").append(move);
+    line.append("\",\"source\":\"").append(source);
+    line.append("\",\"timeLimit\":").append(timeLimit);
+    line.append(",\"allocatedMillis\":").append(allocated);
+    line.append(",\"moveMillis\":")
+        .append((System.nanoTime() - start) / 1000 / 1000.0);
+    String stats = lastSearch.toJson();
+    line.append(',').append(stats, 1, stats.length());
+    searchLog.println(line);
+  }
+
   // If the Move m is legal, records the move as a move by the opponent
   // (updates the internal game board) and returns true.  If the move is
   // illegal, returns false without modifying the internal state of "this"
   // player.  This method allows your opponents to inform you of their moves.
   public boolean opponentMove(Move m) {
-    return board.makeMove(opponentColor, m);
+    if (!board.isValid(opponentColor, m)) {
+      return false;
+    }
+    if (ponder != null && ponder.ponders(m)) {
+      ponderHit = true;
+    }
+    else {
+      stopPondering();
+    }
+    board.makeMove(opponentColor, m);
+    ply++;
+    return true;
   }
 
   // If the Move m is legal, records the move as a move by "this" player
@@ -55,6 +352,11 @@ public class MachinePlayer extends Player {
   // player.  This method is used to help set up "Network problems" for your
   // player to solve.
   public boolean forceMove(Move m) {
-    return board.makeMove(color, m);
+    stopPondering();
+    if (!board.makeMove(color, m)) {
+      return false;
+    }
+    ply++;
+    return true;
   }
 }
@@ -2,6 +2,7 @@ package tests;
 
 import ai.AI;
 import ai.Board;
+import player.Move;
 
 public class AITest {
 
@@ -30,7 +31,12 @@ public class AITest {
     System.out.println(board);
     //		System.out.println(board.allValidMoves(Board.BLACK));
     System.out.println(AI.eval(Board.BLACK, board));
-    System.out.println(AI.bestMove(Board.BLACK, board, 2) + ", should be 63"); //55 wins
+    // 32, 55 and 63 all complete black's network; any of them passes.
+    Move win = AI.bestMove(Board.BLACK, board, 2);
+    board.makeMove(Board.BLACK, win);
+    System.out.println(win + ", passed test? "
+        + board.hasNetwork(Board.BLACK));
+    board.unmakeMove(Board.BLACK, win);
     System.out.println(AI.bestMove(Board.WHITE, board, 2) + ", should be 34"); //55 blocks
 
   }
@@ -0,0 +1,143 @@
+package tests;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import list.AList;
+import list.DList;
+import list.IntList;
+import list.InvalidNodeException;
+import list.List;
+import list.ListNode;
+
+public class AListTest {
+
+  /**
+   * Makes the same random insertions and removals, through nodes, on an
+   * AList and a DList, and checks that they always hold the same items.
+   */
+  private static void testMatchesDList() throws InvalidNodeException {
+    Random random = new Random(3);
+    AList array = new AList(1);
+    List linked = new DList();
+    boolean passed = true;
+    for (int step = 0; step < 2000 && passed; step++) {
+      Integer item = step;
+      int op = random.nextInt(6);
+      if (array.isEmpty() || op == 0) {
+        array.insertFront(item);
+        linked.insertFront(item);
+      }
+      else if (op == 1) {
+        array.insertBack(item);
+        linked.insertBack(item);
+      }
+      else {
+        int index = random.nextInt(array.length());
+        ListNode a = array.front(), d = linked.front();
+        for (int i = 0; i < index; i++) {
+          a = a.next();
+          d = d.next();
+        }
+        passed = a.item() == d.item() && array.get(index) == d.item();
+        if (op == 2) {
+          a.insertAfter(item);
+          d.insertAfter(item);
+        }
+        else if (op == 3) {
+          a.insertBefore(item);
+          d.insertBefore(item);
+          passed = passed && a.item() == d.item();
+        }
+        else {
+          a.remove();
+          d.remove();
+          passed = passed && !a.isValidNode();
+        }
+      }
+      passed = passed && array.length() == linked.length()
+          && array.toString().equals(linked.toString());
+    }
+    ListNode a = array.back(), d = linked.back();
+    while (passed && d.isValidNode()) {
+      passed = a.isValidNode() && a.item() == d.item();
+      a = a.prev();
+      d = d.prev();
+    }
+    passed = passed && !a.isValidNode()
+        && !new AList().front().isValidNode();
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks indexed access, iteration with removal, and that an invalid node
+   * throws.
+   */
+  private static void testIndexAndIterator() {
+    AList list = new AList();
+    for (int i = 0; i < 20; i++) {
+      list.insertBack(i);
+    }
+    Iterator<Object> it = list.iterator();
+    while (it.hasNext()) {
+      if ((Integer) it.next() % 2 == 1) {
+        it.remove();
+      }
+    }
+    boolean passed = list.length() == 10;
+    int expected = 0;
+    for (Object o : list) {
+      passed = passed && (Integer) o == expected;
+      expected += 2;
+    }
+    list.set(0, "zero");
+    passed = passed && list.remove(0).equals("zero")
+        && (Integer) list.get(0) == 2;
+    try {
+      list.get(list.length());
+      passed = false;
+    } catch (IndexOutOfBoundsException e) {
+    }
+    ListNode node = list.back();
+    list.clear();
+    try {
+      node.item();
+      passed = false;
+    } catch (InvalidNodeException e) {
+    }
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks IntList as a stack and a set.
+   */
+  private static void testIntList() {
+    IntList list = new IntList(1);
+    for (int i = 0; i < 100; i++) {
+      list.add(i * 3);
+    }
+    boolean passed = list.size() == 100 && list.get(99) == 297
+        && list.contains(150) && !list.contains(151)
+        && list.indexOf(30) == 10 && list.removeBack() == 297;
+    list.truncate(5);
+    list.set(4, -1);
+    passed = passed && list.size() == 5
+        && list.toString().equals("[  0  3  6  9  -1  ]")
+        && list.toArray().length == 5;
+    list.clear();
+    passed = passed && list.isEmpty();
+    try {
+      list.removeBack();
+      passed = false;
+    } catch (IndexOutOfBoundsException e) {
+    }
+    System.out.println("passed test? " + passed);
+  }
+
+  public static void main(String[] args) throws InvalidNodeException {
+    testMatchesDList();
+    testIndexAndIterator();
+    testIntList();
+  }
+
+}
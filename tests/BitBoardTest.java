@@ -0,0 +1,258 @@
+package tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import list.List;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+
+public class BitBoardTest {
+
+  private static boolean sameLists(List a, List b) {
+    if (a.length() != b.length()) {
+      return false;
+    }
+    StringBuilder as = new StringBuilder(), bs = new StringBuilder();
+    for (Object o : a) {
+      as.append(o instanceof int[] ? ((int[]) o)[0] + "" + ((int[]) o)[1] : o)
+          .append(' ');
+    }
+    for (Object o : b) {
+      bs.append(o instanceof int[] ? ((int[]) o)[0] + "" + ((int[]) o)[1] : o)
+          .append(' ');
+    }
+    return as.toString().equals(bs.toString());
+  }
+
+  /**
+   * evaluate() scores a Board as the original eval() did, in AI.evaluate()'s
+   * fixed point, from the Board's own queries alone, so that it checks the
+   * running totals BitBoard keeps for AI.evaluate().
+   */
+  private static int evaluate(int color, Board board) {
+    if (board.hasNetwork(color)) {
+      return AI.WIN;
+    }
+    if (board.hasNetwork(-color)) {
+      return -AI.WIN;
+    }
+    // Connections are counted from both ends; the central distance of a
+    // chip is kept doubled along each axis.
+    int connections = 0, central = 0, chips = 0;
+    for (int side = Board.BLACK; side <= Board.WHITE; side += 2) {
+      int sign = side == color ? 1 : -1;
+      for (Object o : board.locationOfPieces(side)) {
+        int[] chip = (int[]) o;
+        connections += sign * board.connectedChips(chip).length();
+        central += sign
+            * (Math.abs(2 * chip[0] - 7) + Math.abs(2 * chip[1] - 7));
+        chips++;
+      }
+    }
+    int possibleMoves = board.allValidMoves(color).length()
+        - board.allValidMoves(-color).length();
+    int netLength = board.longestPathLength(color)
+        - board.longestPathLength(-color);
+    return connections * 40 + possibleMoves * 70 + netLength * 200
+        + (chips == 0 ? 0 : central * 200 / chips);
+  }
+
+  private static boolean samePosition(Board board, BitBoard bits) {
+    for (int color = Board.BLACK; color <= Board.WHITE; color += 2) {
+      if (!sameLists(board.allValidMoves(color), bits.allValidMoves(color))
+          || board.allValidMoves(color).length() != bits.countMoves(color)
+          || !sameLists(board.locationOfPieces(color),
+              bits.locationOfPieces(color))
+          || board.hasNetwork(color) != bits.hasNetwork(color)
+          || board.longestPathLength(color) != bits.longestPathLength(color)
+          || AI.evaluate(color, bits) != evaluate(color, board)) {
+        return false;
+      }
+    }
+    for (int x = 0; x < board.grid.length; x++) {
+      for (int y = 0; y < board.grid.length; y++) {
+        int[] chip = { x, y };
+        if (!sameLists(board.connectedChips(chip), bits.connectedChips(chip))) {
+          return false;
+        }
+      }
+    }
+    return board.toString().equals(bits.toString());
+  }
+
+  /**
+   * Plays random games on a Board and a BitBoard side by side and checks
+   * that every query agrees after each move and after unmaking it.
+   */
+  private static void testRandomGames() {
+    Random random = new Random(61);
+    boolean passed = true;
+    for (int game = 0; game < 20 && passed; game++) {
+      Board board = new Board();
+      BitBoard bits = new BitBoard();
+      int color = Board.WHITE;
+      for (int ply = 0; ply < 40 && passed; ply++) {
+        List moves = board.allValidMoves(color);
+        int pick = random.nextInt(moves.length());
+        Move move = null;
+        for (Object o : moves) {
+          if (pick-- == 0) {
+            move = (Move) o;
+          }
+        }
+        passed = board.makeMove(color, move) && bits.makeMove(color, move)
+            && samePosition(board, bits);
+        board.unmakeMove(color, move);
+        bits.unmakeMove(color, move);
+        passed = passed && samePosition(board, bits);
+        board.makeMove(color, move);
+        bits.makeMove(color, move);
+        if (board.hasNetwork(color)) {
+          break;
+        }
+        color = -color;
+      }
+    }
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks that path is a network for color: at least six chips, starting
+   * and ending in opposite goals, each chip connected to the next and no
+   * two steps in the same direction in a row.
+   */
+  private static boolean isNetwork(Board board, int color, List path) {
+    int[][] chips = new int[path.length()][];
+    int n = 0;
+    for (Object o : path) {
+      chips[n++] = (int[]) o;
+    }
+    int axis = color == Board.WHITE ? 0 : 1;
+    if (n < 6 || chips[0][axis] + chips[n - 1][axis] != 7
+        || chips[0][axis] % 7 != 0) {
+      return false;
+    }
+    int lastDx = 0, lastDy = 0;
+    for (int i = 1; i < n; i++) {
+      boolean connected = false;
+      for (Object o : board.connectedChips(chips[i - 1])) {
+        connected |= Arrays.equals((int[]) o, chips[i]);
+      }
+      int dx = Integer.signum(chips[i][0] - chips[i - 1][0]);
+      int dy = Integer.signum(chips[i][1] - chips[i - 1][1]);
+      if (!connected || (dx == lastDx && dy == lastDy)) {
+        return false;
+      }
+      lastDx = dx;
+      lastDy = dy;
+    }
+    return true;
+  }
+
+  /**
+   * Compares network detection, connections and evaluation on random grids,
+   * which are far more likely than random games to contain networks.
+   */
+  private static void testRandomGrids() {
+    Random random = new Random(7);
+    boolean passed = true;
+    int networks = 0;
+    for (int i = 0; i < 20000 && passed; i++) {
+      int[][] grid = new int[8][8];
+      for (int chips = 0; chips < 20; chips++) {
+        int x = random.nextInt(8), y = random.nextInt(8);
+        if (x % 7 != 0 || y % 7 != 0) {
+          grid[x][y] = chips % 2 == 0 ? Board.BLACK : Board.WHITE;
+        }
+      }
+      Board board = new Board(grid);
+      BitBoard bits = new BitBoard(grid);
+      for (int color = Board.BLACK; color <= Board.WHITE; color += 2) {
+        passed = passed && board.hasNetwork(color) == bits.hasNetwork(color)
+            && board.longestPathLength(color) == bits.longestPathLength(color)
+            && AI.evaluate(color, bits) == evaluate(color, board);
+        if (board.hasNetwork(color)) {
+          networks++;
+          passed = passed && isNetwork(board, color, bits.networkPath(color));
+        }
+      }
+      for (int x = 0; x < 8; x++) {
+        for (int y = 0; y < 8; y++) {
+          int[] chip = { x, y };
+          passed = passed
+              && sameLists(board.connectedChips(chip), bits.connectedChips(chip));
+        }
+      }
+    }
+    System.out.println("passed test? " + (passed && networks > 0));
+  }
+
+  /**
+   * Plays random games on a BitBoard and checks, after each move, that the
+   * board as each symmetry leaves it (built from scratch) has the hash the
+   * board predicted for it, the same canonical hashes and evaluation, and
+   * the transformed moves as its valid moves.
+   */
+  private static void testSymmetries() {
+    Random random = new Random(16);
+    boolean passed = true;
+    for (int game = 0; game < 20 && passed; game++) {
+      BitBoard bits = new BitBoard();
+      int color = Board.WHITE;
+      for (int ply = 0; ply < 40 && passed; ply++) {
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = bits.generateMoves(color, moves);
+        for (int t = 0; t < BitBoard.SYMMETRIES; t++) {
+          int[][] grid = new int[8][8];
+          for (int s = 0; s < BitBoard.SQUARES; s++) {
+            int c = bits.get(s / 8, s % 8);
+            int u = BitBoard.transform(t, s);
+            grid[u / 8][u % 8] = BitBoard.transformColor(t, c);
+          }
+          BitBoard image = new BitBoard(grid);
+          int other = BitBoard.transformColor(t, color);
+          passed = passed && image.hash() == bits.symmetricHash(t)
+              && image.hash(other) == bits.symmetricHash(t, color)
+              && image.canonicalHash() == bits.canonicalHash()
+              && image.canonicalHash(other) == bits.canonicalHash(color)
+              && AI.evaluate(other, image) == AI.evaluate(color, bits)
+              && image.countMoves(other) == count;
+          for (int i = 0; i < count; i++) {
+            int m = BitBoard.transformMove(t, moves[i]);
+            passed = passed
+                && image.isValid(other, BitBoard.decode(m))
+                && BitBoard.transformMove(BitBoard.inverse(t), m) == moves[i];
+          }
+        }
+        if (count == 0 || bits.hasNetwork(Board.WHITE)
+            || bits.hasNetwork(Board.BLACK)) {
+          break;
+        }
+        bits.makeMove(color, moves[random.nextInt(count)]);
+        color = -color;
+      }
+    }
+    System.out.println("passed test? " + passed);
+  }
+
+  private static void testInvalidMoves() {
+    BitBoard bits = new BitBoard();
+    System.out.println("passed test? "
+        + (!bits.isValid(Board.WHITE, new Move(0, 0))
+            && !bits.isValid(Board.WHITE, new Move(3, 0))
+            && !bits.isValid(Board.BLACK, new Move(0, 3))
+            && !bits.isValid(Board.WHITE, new Move(3, 3, 2, 2))
+            && bits.isValid(Board.WHITE, new Move(0, 3))));
+  }
+
+  public static void main(String[] args) {
+    testInvalidMoves();
+    testRandomGames();
+    testRandomGrids();
+    testSymmetries();
+  }
+
+}
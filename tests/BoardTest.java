@@ -124,12 +124,30 @@ public class BoardTest {
         + board.allValidMoves(Board.BLACK));
   }
 
+  /**
+   * Checks the placement rules on boards other than 8x8.
+   */
+  private static void testOtherSizes() {
+    Board board = new Board(new int[6][6]);
+    board.grid[2][2] = Board.WHITE;
+    board.grid[3][3] = Board.WHITE;
+    boolean passed = !board.isValid(Board.WHITE, new Move(2, 3))
+        && !board.isValid(Board.WHITE, new Move(1, 1))
+        && board.isValid(Board.WHITE, new Move(4, 1))
+        && board.isValid(Board.WHITE, new Move(5, 2))
+        && !board.isValid(Board.WHITE, new Move(5, 5))
+        && new Board(new int[6][6]).allValidMoves(Board.WHITE).length() == 24
+        && new Board(new int[9][9]).allValidMoves(Board.BLACK).length() == 63;
+    System.out.println("passed test? " + passed);
+  }
+
   public static void main(String[] args) {
     testHasNetwork();
     testValidMove();
     testAllValidMoves();
     testConnectedChips();
     testHasNetwork2();
+    testOtherSizes();
   }
 
 }
@@ -0,0 +1,371 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+
+/**
+ * EngineBenchmark times the board and search operations the engine spends
+ * its time in, on both Board and BitBoard, over a fixed corpus of early,
+ * middle and late game positions, and reports the time and the bytes
+ * allocated per operation. Run it before and after a change to the engine
+ * to see what the change cost or saved.
+ *
+ * The corpus is recorded from seeded games of mixed random and one-ply
+ * greedy moves, so it is the same on every run: early positions have 2 to
+ * 7 chips on the board, middle ones 8 to 19, and late ones have every chip
+ * placed. Each benchmark is warmed up on the corpus before it is measured,
+ * and is measured over whole passes through it. Allocation is read from the
+ * JVM's per-thread allocation counter, which HotSpot provides.
+ *
+ * Usage: java tests.EngineBenchmark [option value]... [name]...
+ *
+ * Options are -positions (positions per phase, default 20), -warmup and
+ * -time (milliseconds of warm-up and measurement per benchmark and phase,
+ * default 500 and 1000) and -depth (the bestMove depth, default 2). Names
+ * restrict the run to the benchmarks whose names contain one of them, e.g.
+ *
+ *   java tests.EngineBenchmark -time 3000 longestPath eval
+ */
+public class EngineBenchmark {
+
+  private final static String[] PHASES = { "early", "mid", "late" };
+  // Chips on the board at which each phase starts, and past the last.
+  private final static int[] PHASE_START = { 2, 8, 20, 60 };
+
+  // Results are written here so the JIT cannot skip the work being timed.
+  private static volatile long sink;
+
+  /**
+   * A Position is one position of the corpus, held as both a Board and a
+   * BitBoard, with what the benchmarks need precomputed.
+   */
+  static class Position {
+    final Board board;
+    final BitBoard bits;
+    // The side to move.
+    final int color;
+    // The moves allValidMoves() tries, for isValid().
+    final Move[] candidates;
+    // Every chip on the board, as {x, y}.
+    final int[][] chips;
+    // A copy of bits, remade before each timed pass, for the benchmarks that
+    // would otherwise find their answers in its caches.
+    BitBoard fresh;
+
+    Position(BitBoard bits, int color) {
+      this.bits = bits;
+      this.color = color;
+      int[][] grid = new int[BitBoard.SIZE][BitBoard.SIZE];
+      ArrayList<int[]> found = new ArrayList<int[]>();
+      ArrayList<int[]> own = new ArrayList<int[]>();
+      for (int x = 0; x < BitBoard.SIZE; x++) {
+        for (int y = 0; y < BitBoard.SIZE; y++) {
+          grid[x][y] = bits.get(x, y);
+          if (grid[x][y] != Board.EMPTY) {
+            found.add(new int[] { x, y });
+          }
+          if (grid[x][y] == color) {
+            own.add(new int[] { x, y });
+          }
+        }
+      }
+      board = new Board(grid);
+      chips = found.toArray(new int[found.size()][]);
+      ArrayList<Move> moves = new ArrayList<Move>();
+      for (int x = 0; x < BitBoard.SIZE; x++) {
+        for (int y = 0; y < BitBoard.SIZE; y++) {
+          if (own.size() < 10) {
+            moves.add(new Move(x, y));
+          }
+          else {
+            for (int[] chip : own) {
+              moves.add(new Move(x, y, chip[0], chip[1]));
+            }
+          }
+        }
+      }
+      candidates = moves.toArray(new Move[moves.size()]);
+    }
+  }
+
+  /**
+   * A Benchmark is one operation to time. run() performs it on a position
+   * and returns how many times it did so.
+   */
+  static abstract class Benchmark {
+    final String name;
+    // Whether run() uses Position.fresh.
+    final boolean fresh;
+
+    Benchmark(String name, boolean fresh) {
+      this.name = name;
+      this.fresh = fresh;
+    }
+
+    abstract int run(Position p);
+  }
+
+  /**
+   * benchmarks() returns every benchmark, those on Board first.
+   */
+  static Benchmark[] benchmarks(final int depth) {
+    return new Benchmark[] {
+      new Benchmark("Board.isValid", false) {
+        int run(Position p) {
+          int valid = 0;
+          for (Move m : p.candidates) {
+            valid += p.board.isValid(p.color, m) ? 1 : 0;
+          }
+          sink = valid;
+          return p.candidates.length;
+        }
+      },
+      new Benchmark("Board.allValidMoves", false) {
+        int run(Position p) {
+          sink = p.board.allValidMoves(p.color).length();
+          return 1;
+        }
+      },
+      new Benchmark("Board.hasNetwork", false) {
+        int run(Position p) {
+          sink = (p.board.hasNetwork(Board.WHITE) ? 1 : 0)
+              + (p.board.hasNetwork(Board.BLACK) ? 2 : 0);
+          return 2;
+        }
+      },
+      new Benchmark("Board.longestPathLength", false) {
+        int run(Position p) {
+          sink = p.board.longestPathLength(Board.WHITE)
+              + p.board.longestPathLength(Board.BLACK);
+          return 2;
+        }
+      },
+      new Benchmark("Board.connectedChips", false) {
+        int run(Position p) {
+          int count = 0;
+          for (int[] chip : p.chips) {
+            count += p.board.connectedChips(chip).length();
+          }
+          sink = count;
+          return p.chips.length;
+        }
+      },
+      new Benchmark("BitBoard.isValid", false) {
+        int run(Position p) {
+          int valid = 0;
+          for (Move m : p.candidates) {
+            valid += p.bits.isValid(p.color, m) ? 1 : 0;
+          }
+          sink = valid;
+          return p.candidates.length;
+        }
+      },
+      new Benchmark("BitBoard.allValidMoves", false) {
+        int run(Position p) {
+          sink = p.bits.allValidMoves(p.color).length();
+          return 1;
+        }
+      },
+      new Benchmark("BitBoard.generateMoves", false) {
+        final int[] moves = new int[BitBoard.MAX_MOVES];
+
+        int run(Position p) {
+          sink = p.bits.generateMoves(p.color, moves);
+          return 1;
+        }
+      },
+      new Benchmark("BitBoard.hasNetwork", false) {
+        int run(Position p) {
+          sink = (p.bits.hasNetwork(Board.WHITE) ? 1 : 0)
+              + (p.bits.hasNetwork(Board.BLACK) ? 2 : 0);
+          return 2;
+        }
+      },
+      // Measured on a new copy of each position, as the search mostly meets
+      // positions it has not seen before; a repeat is a table lookup.
+      new Benchmark("BitBoard.longestPathLength", true) {
+        int run(Position p) {
+          sink = p.fresh.longestPathLength(Board.WHITE)
+              + p.fresh.longestPathLength(Board.BLACK);
+          return 2;
+        }
+      },
+      new Benchmark("BitBoard.connectedChips", false) {
+        int run(Position p) {
+          int count = 0;
+          for (int[] chip : p.chips) {
+            count += p.bits.connectedChips(chip).length();
+          }
+          sink = count;
+          return p.chips.length;
+        }
+      },
+      new Benchmark("AI.eval", true) {
+        int run(Position p) {
+          sink = Double.doubleToLongBits(AI.eval(p.color, p.fresh));
+          return 1;
+        }
+      },
+      new Benchmark("AI.bestMove/" + depth, true) {
+        int run(Position p) {
+          Move move = AI.bestMove(p.color, p.fresh, depth);
+          sink = move == null ? 0 : BitBoard.encode(move);
+          return 1;
+        }
+      }
+    };
+  }
+
+  /**
+   * corpus() records the given number of positions in each phase, with the
+   * side to move in each, from seeded games.
+   *
+   * @return the positions of each phase, indexed as PHASES
+   */
+  static Position[][] corpus(int perPhase) {
+    Random random = new Random(20);
+    ArrayList<ArrayList<Position>> phases = new ArrayList<ArrayList<Position>>();
+    for (int i = 0; i < PHASES.length; i++) {
+      phases.add(new ArrayList<Position>());
+    }
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    while (phases.get(PHASES.length - 1).size() < perPhase) {
+      BitBoard board = new BitBoard();
+      int color = Board.WHITE;
+      // Record one position in each stretch of three moves, so that the
+      // positions of a game differ from each other.
+      for (int ply = 0; ply < 40; ply++) {
+        if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+          break;
+        }
+        int chips = board.numberChips(Board.WHITE)
+            + board.numberChips(Board.BLACK);
+        for (int i = 0; i < PHASES.length; i++) {
+          if (chips >= PHASE_START[i] && chips < PHASE_START[i + 1]
+              && phases.get(i).size() < perPhase && random.nextInt(3) == 0) {
+            phases.get(i).add(new Position(new BitBoard(board), color));
+          }
+        }
+        int count = board.generateMoves(color, moves);
+        int move = random.nextInt(2) == 0 ? moves[random.nextInt(count)]
+            : BitBoard.encode(AI.bestMove(color, board, 1));
+        board.makeMove(color, move);
+        color = -color;
+      }
+    }
+    Position[][] corpus = new Position[PHASES.length][];
+    for (int i = 0; i < PHASES.length; i++) {
+      corpus[i] = phases.get(i).toArray(new Position[perPhase]);
+    }
+    return corpus;
+  }
+
+  /**
+   * measure() runs a benchmark in passes over the positions for at least the
+   * given time.
+   *
+   * @return nanoseconds per operation, bytes allocated per operation, and
+   *         the number of operations, or a negative byte count if the JVM
+   *         does not count allocation
+   */
+  static double[] measure(Benchmark benchmark, Position[] positions,
+      long millis) {
+    com.sun.management.ThreadMXBean threads = allocationCounter();
+    long thread = Thread.currentThread().getId();
+    long nanos = 0, bytes = 0, ops = 0;
+    while (nanos < millis * 1000000L) {
+      if (benchmark.fresh) {
+        for (Position p : positions) {
+          p.fresh = new BitBoard(p.bits);
+        }
+      }
+      long allocated = threads == null ? 0
+          : threads.getThreadAllocatedBytes(thread);
+      long start = System.nanoTime();
+      for (Position p : positions) {
+        ops += benchmark.run(p);
+      }
+      nanos += System.nanoTime() - start;
+      bytes += threads == null ? 0
+          : threads.getThreadAllocatedBytes(thread) - allocated;
+    }
+    return new double[] { (double) nanos / ops,
+        threads == null ? -1 : (double) bytes / ops, ops };
+  }
+
+  /**
+   * allocationCounter() returns the JVM's thread bean if it can count the
+   * bytes each thread allocates, and null if it cannot.
+   */
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    Object bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) bean;
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      return null;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+
+  private static boolean selected(String name, ArrayList<String> filters) {
+    if (filters.isEmpty()) {
+      return true;
+    }
+    for (String filter : filters) {
+      if (name.contains(filter)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static void main(String[] args) {
+    int positions = 20, depth = 2;
+    long warmup = 500, time = 1000;
+    ArrayList<String> filters = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-positions")) {
+        positions = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-warmup")) {
+        warmup = Long.parseLong(args[++i]);
+      }
+      else if (args[i].equals("-time")) {
+        time = Long.parseLong(args[++i]);
+      }
+      else if (args[i].equals("-depth")) {
+        depth = Integer.parseInt(args[++i]);
+      }
+      else {
+        filters.add(args[i]);
+      }
+    }
+
+    Position[][] corpus = corpus(positions);
+    System.out.println("benchmark                    phase        ns/op"
+        + "      bytes/op         ops");
+    for (Benchmark benchmark : benchmarks(depth)) {
+      if (!selected(benchmark.name, filters)) {
+        continue;
+      }
+      for (int phase = 0; phase < PHASES.length; phase++) {
+        measure(benchmark, corpus[phase], warmup);
+        double[] result = measure(benchmark, corpus[phase], time);
+        System.out.println(String.format("%-28s %-6s %12.1f %13.1f %11d",
+            benchmark.name, PHASES[phase], result[0], result[1],
+            (long) result[2]));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package tests;
+
+import java.util.Random;
+
+import list.List;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+import ai.EvalCache;
+import ai.TranspositionTable;
+
+public class EvalCacheTest {
+
+  /**
+   * Checks that a stored score reads back for either color, that a
+   * colliding key overwrites it, and that the counters count.
+   */
+  private static void testProbeAndStore() {
+    EvalCache cache = new EvalCache(16);
+    boolean passed = cache.probe(5, Board.WHITE) == EvalCache.MISS;
+    cache.store(5, Board.BLACK, 123);
+    passed = passed && cache.probe(5, Board.BLACK) == 123
+        && cache.probe(5, Board.WHITE) == -123;
+    cache.store(5 + 16, Board.WHITE, 7);
+    passed = passed && cache.probe(5, Board.WHITE) == EvalCache.MISS
+        && cache.probe(5 + 16, Board.WHITE) == 7;
+    passed = passed && cache.hits() == 3 && cache.misses() == 2;
+    cache.clear();
+    passed = passed && cache.probe(5 + 16, Board.WHITE) == EvalCache.MISS
+        && cache.hits() == 0;
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Plays a game in which both sides search with the same cache, checking
+   * at every move that the search picks the same move it does without the
+   * cache, and prints how often the cache hit.
+   */
+  private static void testSameMoves() {
+    Random random = new Random(15);
+    EvalCache cache = new EvalCache();
+    BitBoard board = new BitBoard();
+    boolean passed = true;
+    int color = Board.WHITE;
+    for (int ply = 0; ply < 26 && !board.hasNetwork(-color); ply++) {
+      Move plain = AI.bestMove(color, board, 3, new TranspositionTable());
+      Move cached = AI.bestMove(color, board, 3, new TranspositionTable(),
+          cache);
+      passed = passed && plain.toString().equals(cached.toString());
+      // Random moves now and then keep the game from repeating itself.
+      if (ply % 4 == 3) {
+        List valid = board.allValidMoves(color);
+        int pick = random.nextInt(valid.length());
+        for (Object o : valid) {
+          if (pick-- == 0) {
+            plain = (Move) o;
+          }
+        }
+      }
+      board.makeMove(color, plain);
+      color = -color;
+    }
+    System.out.println("passed test? " + passed);
+    System.out.println(String.format("hits %d, misses %d, hit rate %.2f",
+        cache.hits(), cache.misses(), cache.hitRate()));
+  }
+
+  public static void main(String[] args) {
+    testProbeAndStore();
+    testSameMoves();
+  }
+
+}
@@ -0,0 +1,138 @@
+package tests;
+
+import java.util.Random;
+
+import list.DList;
+import list.List;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+
+/**
+ * Times longestPathLength(), which AI.eval() calls for both colors at every
+ * leaf, on late-game positions: the old Board algorithm (whose memo never
+ * shrank, reproduced below on Board's public methods), the new BitBoard one
+ * with an empty and a warm position cache, and a whole AI.eval() for scale.
+ */
+public class LongestPathBenchmark {
+
+  // Results are written here so the JIT cannot skip the work being timed.
+  private static volatile double sink;
+
+  /**
+   * The longestPathLength() Board used to have, which kept every chip it had
+   * ever visited in its memo and so explored paths from each chip in a
+   * different order-dependent way.
+   */
+  private static int oldLongestPathLength(Board board, int color) {
+    int length = 0;
+    for (Object curr : board.locationOfPieces(color)) {
+      List network = new DList();
+      network.insertBack(curr);
+      length = Math.max(oldHelper(board, network, (int[]) curr, -9), length);
+    }
+    return length;
+  }
+
+  private static int oldHelper(Board board, List memo, int[] pos, int dir) {
+    int pathLength = memo.length();
+    for (Object curr : board.connectedChips(pos)) {
+      int[] c = (int[]) curr;
+      int newDir = Integer.signum(c[0] - pos[0]) * 3
+          + Integer.signum(c[1] - pos[1]);
+      boolean seen = false;
+      for (Object o : memo) {
+        seen |= ((int[]) o)[0] == c[0] && ((int[]) o)[1] == c[1];
+      }
+      if (dir != newDir && !seen) {
+        memo.insertBack(c);
+        pathLength = Math.max(oldHelper(board, memo, c, newDir), pathLength);
+      }
+    }
+    return pathLength;
+  }
+
+  /**
+   * Plays random moves until both sides have placed all ten chips, then the
+   * given number of random step moves, never completing a network.
+   */
+  private static BitBoard latePosition(Random random, int steps) {
+    BitBoard board = new BitBoard();
+    int color = Board.WHITE;
+    for (int ply = 0; ply < 20 + steps; ply++) {
+      List valid = board.allValidMoves(color);
+      int pick = random.nextInt(valid.length());
+      for (Object o : valid) {
+        if (pick-- <= 0) {
+          board.makeMove(color, (Move) o);
+          if (!board.hasNetwork(color)) {
+            break;
+          }
+          board.unmakeMove(color, (Move) o);
+        }
+      }
+      color = -color;
+    }
+    return board;
+  }
+
+  private static Board toBoard(BitBoard bits) {
+    Board board = new Board();
+    for (int x = 0; x < BitBoard.SIZE; x++) {
+      for (int y = 0; y < BitBoard.SIZE; y++) {
+        board.grid[x][y] = bits.get(x, y);
+      }
+    }
+    return board;
+  }
+
+  public static void main(String[] args) {
+    int positions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    System.out.println("steps   old us   new cold us   new warm us   eval us");
+    for (int steps = 0; steps <= 40; steps += 10) {
+      Random random = new Random(steps);
+      BitBoard[] bits = new BitBoard[positions];
+      Board[] boards = new Board[positions];
+      for (int i = 0; i < positions; i++) {
+        bits[i] = latePosition(random, steps);
+        boards[i] = toBoard(bits[i]);
+      }
+
+      // Run everything once untimed so the JIT has compiled it.
+      for (int round = 0; round < 2; round++) {
+        long t0 = System.nanoTime();
+        for (Board board : boards) {
+          sink = oldLongestPathLength(board, Board.WHITE)
+              + oldLongestPathLength(board, Board.BLACK);
+        }
+        long t1 = System.nanoTime();
+        BitBoard[] cold = new BitBoard[positions];
+        for (int i = 0; i < positions; i++) {
+          cold[i] = new BitBoard(bits[i]);
+        }
+        long t2 = System.nanoTime();
+        for (BitBoard board : cold) {
+          sink = board.longestPathLength(Board.WHITE)
+              + board.longestPathLength(Board.BLACK);
+        }
+        long t3 = System.nanoTime();
+        for (BitBoard board : cold) {
+          sink = board.longestPathLength(Board.WHITE)
+              + board.longestPathLength(Board.BLACK);
+        }
+        long t4 = System.nanoTime();
+        for (BitBoard board : bits) {
+          sink = AI.eval(Board.WHITE, board);
+        }
+        long t5 = System.nanoTime();
+        if (round == 1) {
+          System.out.println(String.format("%5d %8.1f %13.1f %13.1f %9.1f",
+              steps, (t1 - t0) / 1e3 / positions, (t3 - t2) / 1e3 / positions,
+              (t4 - t3) / 1e3 / positions, (t5 - t4) / 1e3 / positions));
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package tests;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+import ai.EvalCache;
+import ai.OpeningBook;
+import ai.TranspositionTable;
+
+/**
+ * OpeningBookGenerator builds an OpeningBook offline by searching early
+ * positions for longer than a player could afford during a game.
+ *
+ * It explores the openings breadth first, once with the book playing white
+ * and once with it playing black. Where the book's side is to move, it
+ * searches the position and follows only the move found; where the other
+ * side is to move, it follows every reply, since any of them might be
+ * played. Equivalent positions are explored once. The first move of each
+ * side is left to AI.bestMoveHelper()'s built-in opening move.
+ *
+ * Usage: java tests.OpeningBookGenerator [file [positions [millis]]]
+ * searches the given number of positions (default 150) for the given
+ * number of milliseconds each (default 5000) and writes the book to file
+ * (default ai/opening.book).
+ */
+public class OpeningBookGenerator {
+
+  // Openings end once both sides have placed all their chips.
+  private final static int MAX_PLY = 20;
+
+  // A position waiting to be explored.
+  private static class Node {
+    final BitBoard board;
+    final int color, bookColor, ply;
+
+    Node(BitBoard board, int color, int bookColor, int ply) {
+      this.board = board;
+      this.color = color;
+      this.bookColor = bookColor;
+      this.ply = ply;
+    }
+  }
+
+  /**
+   * generate() builds a book.
+   *
+   * @param positions the number of positions to search
+   * @param millis how long to search each one
+   * @param log where to report each position searched, or null
+   * @return the book
+   */
+  public static OpeningBook generate(int positions, long millis,
+      PrintStream log) {
+    OpeningBook book = new OpeningBook();
+    EvalCache cache = new EvalCache();
+    ArrayDeque<Node> queue = new ArrayDeque<Node>();
+    HashSet<Long> seen = new HashSet<Long>();
+    queue.add(new Node(new BitBoard(), Board.WHITE, Board.WHITE, 0));
+    queue.add(new Node(new BitBoard(), Board.WHITE, Board.BLACK, 0));
+    int searched = 0;
+    while (!queue.isEmpty() && searched < positions) {
+      Node node = queue.poll();
+      BitBoard board = node.board;
+      int color = node.color;
+      if (node.ply >= MAX_PLY || board.hasNetwork(Board.WHITE)
+          || board.hasNetwork(Board.BLACK)) {
+        continue;
+      }
+      if (color == node.bookColor) {
+        Move move = book.lookup(board, color);
+        if (move == null && board.numberChips(color) == 0) {
+          move = AI.bestMove(color, board, 1);
+        }
+        else if (move == null) {
+          long start = System.nanoTime();
+          move = AI.bestMoveBefore(color, board, start + millis * 1000000,
+              new TranspositionTable(), cache);
+          book.put(board, color, move);
+          searched++;
+          if (log != null) {
+            log.println(String.format("%4d  ply %2d  %s  %s", searched,
+                node.ply, color == Board.WHITE ? "white" : "black", move));
+          }
+        }
+        BitBoard next = new BitBoard(board);
+        next.makeMove(color, move);
+        queue.add(new Node(next, -color, node.bookColor, node.ply + 1));
+      }
+      else {
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = board.generateMoves(color, moves);
+        for (int i = 0; i < count; i++) {
+          BitBoard next = new BitBoard(board);
+          next.makeMove(color, moves[i]);
+          // The book's color tells the two explorations apart.
+          long key = next.canonicalHash(-color);
+          if (node.bookColor == Board.WHITE) {
+            key = ~key;
+          }
+          if (seen.add(key)) {
+            queue.add(new Node(next, -color, node.bookColor, node.ply + 1));
+          }
+        }
+      }
+    }
+    return book;
+  }
+
+  public static void main(String[] args) throws IOException {
+    String file = args.length > 0 ? args[0] : "ai/" + OpeningBook.RESOURCE;
+    int positions = args.length > 1 ? Integer.parseInt(args[1]) : 150;
+    long millis = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+    OpeningBook book = generate(positions, millis, System.out);
+    OutputStream out = new FileOutputStream(file);
+    try {
+      book.save(out);
+    }
+    finally {
+      out.close();
+    }
+    System.out.println(book.size() + " positions written to " + file);
+  }
+
+}
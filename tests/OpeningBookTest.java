@@ -0,0 +1,106 @@
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.BitBoard;
+import ai.Board;
+import ai.OpeningBook;
+
+public class OpeningBookTest {
+
+  private static BitBoard position(int[] squares) {
+    BitBoard board = new BitBoard();
+    int color = Board.WHITE;
+    for (int i = 0; i < squares.length; i += 2) {
+      board.makeMove(color, new Move(squares[i], squares[i + 1]));
+      color = -color;
+    }
+    return board;
+  }
+
+  /**
+   * Puts a move in a book, saves and reloads it, and checks that the move
+   * comes back for the position, moved accordingly for its mirror image and
+   * its transpose, and not at all for another position or side to move.
+   */
+  private static void testLookup() throws IOException {
+    OpeningBook book = new OpeningBook();
+    book.put(position(new int[] { 3, 3, 2, 5 }), Board.WHITE, new Move(5, 2));
+    book.put(position(new int[] { 3, 3 }), Board.BLACK, new Move(4, 4));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    book.save(out);
+    book = OpeningBook.load(new ByteArrayInputStream(out.toByteArray()));
+
+    Move move = book.lookup(position(new int[] { 3, 3, 2, 5 }), Board.WHITE);
+    Move mirror = book.lookup(position(new int[] { 4, 3, 5, 5 }), Board.WHITE);
+    BitBoard transpose = new BitBoard();
+    transpose.makeMove(Board.BLACK, new Move(3, 3));
+    transpose.makeMove(Board.WHITE, new Move(5, 2));
+    Move swapped = book.lookup(transpose, Board.BLACK);
+    boolean passed = book.size() == 2 && move != null
+        && move.toString().equals(new Move(5, 2).toString())
+        && mirror != null
+        && mirror.toString().equals(new Move(2, 2).toString())
+        && swapped != null
+        && swapped.toString().equals(new Move(2, 5).toString())
+        && book.lookup(position(new int[] { 3, 3, 2, 5 }), Board.BLACK) == null
+        && book.lookup(position(new int[] { 3, 3, 2, 4 }), Board.WHITE) == null;
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Generates a small book and checks that a MachinePlayer given it plays
+   * the book's moves. The generator searches white's second moves first,
+   * starting with the reply generateMoves() lists first.
+   */
+  private static void testPlayer() {
+    OpeningBook book = OpeningBookGenerator.generate(3, 200, null);
+    MachinePlayer player = new MachinePlayer(1, 1);
+    player.setOpeningBook(book);
+    BitBoard board = new BitBoard();
+    board.makeMove(Board.WHITE, player.chooseMove());
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    board.generateMoves(Board.BLACK, moves);
+    Move reply = BitBoard.decode(moves[0]);
+    player.opponentMove(reply);
+    board.makeMove(Board.BLACK, reply);
+    Move expected = book.lookup(board, Board.WHITE);
+    long start = System.nanoTime();
+    Move chosen = player.chooseMove();
+    long micros = (System.nanoTime() - start) / 1000;
+    // Only a timed player starts with the standard book.
+    boolean passed = book.size() == 3 && expected != null
+        && chosen.toString().equals(expected.toString())
+        && new MachinePlayer(1, 1).getOpeningBook() == null
+        && new MachinePlayer(1).getOpeningBook() != null;
+    System.out.println("passed test? " + passed);
+    System.out.println("book move in " + micros + " us");
+  }
+
+  /**
+   * Checks that standard() gives each caller its own book, so that putting
+   * a move in one does not change another.
+   */
+  private static void testStandardCopies() {
+    OpeningBook mine = OpeningBook.standard();
+    int size = mine.size();
+    BitBoard board = position(new int[] { 1, 1, 6, 6, 1, 6 });
+    mine.put(board, Board.BLACK, new Move(6, 1));
+    OpeningBook other = OpeningBook.standard();
+    boolean passed = mine != other && other.size() == size
+        && other.lookup(board, Board.BLACK) == null
+        && mine.lookup(board, Board.BLACK) != null;
+    System.out.println("passed test? " + passed);
+  }
+
+  public static void main(String[] args) throws IOException {
+    testLookup();
+    testPlayer();
+    testStandardCopies();
+  }
+
+}
@@ -0,0 +1,144 @@
+package tests;
+
+import java.util.Random;
+
+import list.List;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+import ai.ParallelSearch;
+
+public class ParallelSearchTest {
+
+  /**
+   * Plays the given number of random moves from an empty board, avoiding
+   * moves which complete a network.
+   */
+  private static BitBoard randomPosition(long seed, int moves) {
+    Random random = new Random(seed);
+    BitBoard board = new BitBoard();
+    int color = Board.WHITE;
+    for (int i = 0; i < moves; i++) {
+      List valid = board.allValidMoves(color);
+      int pick = random.nextInt(valid.length());
+      for (Object o : valid) {
+        if (pick-- <= 0) {
+          board.makeMove(color, (Move) o);
+          if (!board.hasNetwork(color)) {
+            break;
+          }
+          board.unmakeMove(color, (Move) o);
+        }
+      }
+      color = -color;
+    }
+    return board;
+  }
+
+  /**
+   * Checks that a parallel search picks the same move as AI.bestMove().
+   */
+  private static void testSameMove() {
+    boolean passed = true;
+    ParallelSearch search = new ParallelSearch(4);
+    for (int seed = 0; seed < 6; seed++) {
+      BitBoard board = randomPosition(seed, 6 + 2 * seed);
+      Move serial = AI.bestMove(Board.WHITE, board, 3);
+      Move parallel = search.bestMove(Board.WHITE, board, 3);
+      passed = passed && serial.toString().equals(parallel.toString());
+    }
+    search.shutdown();
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks that a timed parallel search returns within its limit, plus a
+   * little slack for the workers to notice the deadline, on positions from
+   * the opening to the step moves.
+   */
+  private static void testDeadline() {
+    final long limit = 100, slack = 30;
+    boolean passed = true;
+    long worst = 0;
+    ParallelSearch search = new ParallelSearch(2);
+    for (int seed = 0; seed < 12; seed++) {
+      BitBoard board = randomPosition(200 + seed, 3 * seed);
+      long start = System.nanoTime();
+      Move move = search.bestMoveBefore(Board.WHITE, board, start + limit
+          * 1000000);
+      long millis = (System.nanoTime() - start) / 1000000;
+      worst = Math.max(worst, millis);
+      passed = passed && move != null && millis <= limit + slack;
+    }
+    search.shutdown();
+    System.out.println("passed test? " + passed);
+    System.out.println("slowest move: " + worst + " ms of " + limit);
+  }
+
+  /**
+   * Times a fixed-depth search of the same positions with 1 to maxThreads
+   * threads and prints the speedup and efficiency over one thread, and how
+   * often a cutoff came from the first move searched.
+   */
+  private static void reportScaling(int maxThreads, int depth) {
+    BitBoard[] positions = new BitBoard[4];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = randomPosition(100 + i, 10 + 4 * i);
+    }
+    System.out.println("threads    millis     nodes  speedup  efficiency  first-cut");
+    double base = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      ParallelSearch search = new ParallelSearch(threads);
+      double millis = 0;
+      long nodes = 0;
+      double firstCut = 0;
+      for (BitBoard board : positions) {
+        search.bestMove(Board.WHITE, board, depth);
+        millis += search.lastMillis();
+        nodes += search.lastNodes();
+        firstCut += search.lastFirstMoveCutoffRate() / positions.length;
+      }
+      search.shutdown();
+      if (threads == 1) {
+        base = millis;
+      }
+      System.out.println(String.format("%7d %9.0f %9d %8.2f %11.2f %10.2f",
+          threads, millis, nodes, base / millis, base / millis / threads,
+          firstCut));
+    }
+  }
+
+  /**
+   * Prints the nodes a one-thread search of the same positions visits with
+   * and without principal variation search.
+   */
+  private static void reportPrincipalVariation(int depth) {
+    System.out.println("pvs      nodes");
+    for (int pass = 0; pass < 2; pass++) {
+      ParallelSearch search = new ParallelSearch(1);
+      search.setPrincipalVariationSearch(pass == 0);
+      long nodes = 0;
+      for (int i = 0; i < 4; i++) {
+        search.bestMove(Board.WHITE, randomPosition(100 + i, 10 + 4 * i), depth);
+        nodes += search.lastNodes();
+      }
+      System.out.println(String.format("%-5s %8d", pass == 0, nodes));
+      search.shutdown();
+    }
+  }
+
+  /**
+   * @param args optional maximum thread count and search depth
+   */
+  public static void main(String[] args) {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime
+        .getRuntime().availableProcessors();
+    int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    testSameMove();
+    testDeadline();
+    reportScaling(maxThreads, depth);
+    reportPrincipalVariation(depth + 1);
+  }
+
+}
@@ -0,0 +1,392 @@
+package tests;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import list.List;
+import player.Move;
+import ai.BitBoard;
+import ai.Board;
+
+/**
+ * Perft counts the move sequences of a given length from a position, by
+ * making and taking back every valid move, and so checks move generation
+ * exactly: a faster allValidMoves(), isValid() or board representation must
+ * give the same counts. Three generators are counted and compared:
+ * Board.allValidMoves() with Board.makeMove(), BitBoard.allValidMoves() with
+ * BitBoard.makeMove(), and BitBoard.generateMoves() with packed moves, which
+ * counts the last ply with countMoves().
+ *
+ * A position in which either side has a network ends the game, so no moves
+ * are counted from it; it still counts as a sequence if it is reached on the
+ * last ply.
+ *
+ * Positions are written as the moves that reach them from the empty board,
+ * white first, separated by spaces: "xy" adds a chip at (x, y) and "xy-XY"
+ * steps the chip at (x, y) to (X, Y).
+ *
+ * Usage:
+ *
+ *   java tests.Perft
+ *     counts every position of the reference table with every generator,
+ *     checks the counts, and reports leaves per second
+ *   java tests.Perft depth [position]
+ *     counts one position (the empty board by default) with every generator
+ *   java tests.Perft -divide depth [position]
+ *     also lists each first move's count, marking moves the generators
+ *     disagree on, which leads to the position to look at next
+ */
+public class Perft {
+
+  /**
+   * Reference positions and their counts at depths 1, 2, ... : the empty
+   * board; an early position; black about to place its last chip, so that
+   * white's replies are step moves; a step-move middle game; and a step-move
+   * position in which three of white's moves complete a network.
+   */
+  private final static Object[][] REFERENCE = {
+    { "", new long[] { 48, 2268, 104904, 4773960 } },
+    { "14 64 76 54 74 41", new long[] { 40, 1455, 51488 } },
+    { "45 12 05 22 16 27 64 54 34 61 75 42 01 60 21 30 51 17 02",
+        new long[] { 18, 2068, 351828 } },
+    { "63 17 45 31 21 25 64 41 05 54 32 43 66 56 02 12 24 47 76 61 24-51"
+        + " 47-11 02-24 31-15 24-16 43-44",
+        new long[] { 129, 18267, 2514179 } },
+    { "15 22 06 54 46 64 62 23 75 30 32 56 01 61 71 37 11 50 36 42 71-44"
+        + " 42-27 36-63 22-35 32-34 61-42 44-41 30-25 62-31 27-40",
+        new long[] { 184, 26310, 4348886 } },
+  };
+
+  /**
+   * A Generator makes and counts moves on a board of its own.
+   */
+  static abstract class Generator {
+    final String name;
+
+    Generator(String name) {
+      this.name = name;
+    }
+
+    /**
+     * setUp() sets the board to the empty board and makes the given moves.
+     */
+    abstract void setUp(Move[] moves);
+
+    /**
+     * perft() counts the sequences of depth moves, color moving first.
+     */
+    abstract long perft(int color, int depth);
+
+    /**
+     * divide() counts as perft() does, separately after each first move,
+     * keyed by Move.toString().
+     */
+    abstract TreeMap<String, Long> divide(int color, int depth);
+  }
+
+  static class BoardGenerator extends Generator {
+    private Board board;
+
+    BoardGenerator() {
+      super("Board");
+    }
+
+    void setUp(Move[] moves) {
+      board = new Board();
+      for (int i = 0; i < moves.length; i++) {
+        make(i % 2 == 0 ? Board.WHITE : Board.BLACK, moves[i]);
+      }
+    }
+
+    private void make(int color, Move move) {
+      if (!board.makeMove(color, move)) {
+        throw new IllegalStateException("Board rejects its own move " + move);
+      }
+    }
+
+    long perft(int color, int depth) {
+      if (depth == 0) {
+        return 1;
+      }
+      if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+        return 0;
+      }
+      List moves = board.allValidMoves(color);
+      if (depth == 1) {
+        return moves.length();
+      }
+      long count = 0;
+      for (Object o : moves) {
+        make(color, (Move) o);
+        count += perft(-color, depth - 1);
+        board.unmakeMove(color, (Move) o);
+      }
+      return count;
+    }
+
+    TreeMap<String, Long> divide(int color, int depth) {
+      TreeMap<String, Long> counts = new TreeMap<String, Long>();
+      for (Object o : board.allValidMoves(color)) {
+        make(color, (Move) o);
+        counts.put(o.toString(), perft(-color, depth - 1));
+        board.unmakeMove(color, (Move) o);
+      }
+      return counts;
+    }
+  }
+
+  static class BitBoardGenerator extends Generator {
+    private BitBoard board;
+
+    BitBoardGenerator() {
+      super("BitBoard");
+    }
+
+    void setUp(Move[] moves) {
+      board = new BitBoard();
+      for (int i = 0; i < moves.length; i++) {
+        make(i % 2 == 0 ? Board.WHITE : Board.BLACK, moves[i]);
+      }
+    }
+
+    private void make(int color, Move move) {
+      if (!board.makeMove(color, move)) {
+        throw new IllegalStateException("BitBoard rejects its own move "
+            + move);
+      }
+    }
+
+    long perft(int color, int depth) {
+      if (depth == 0) {
+        return 1;
+      }
+      if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+        return 0;
+      }
+      List moves = board.allValidMoves(color);
+      if (depth == 1) {
+        return moves.length();
+      }
+      long count = 0;
+      for (Object o : moves) {
+        make(color, (Move) o);
+        count += perft(-color, depth - 1);
+        board.unmakeMove(color, (Move) o);
+      }
+      return count;
+    }
+
+    TreeMap<String, Long> divide(int color, int depth) {
+      TreeMap<String, Long> counts = new TreeMap<String, Long>();
+      for (Object o : board.allValidMoves(color)) {
+        make(color, (Move) o);
+        counts.put(o.toString(), perft(-color, depth - 1));
+        board.unmakeMove(color, (Move) o);
+      }
+      return counts;
+    }
+  }
+
+  static class PackedGenerator extends Generator {
+    private BitBoard board;
+    // A move buffer for each ply, created when the ply is first reached.
+    private int[][] buffers = new int[0][];
+
+    PackedGenerator() {
+      super("packed");
+    }
+
+    void setUp(Move[] moves) {
+      board = new BitBoard();
+      for (int i = 0; i < moves.length; i++) {
+        board.makeMove(i % 2 == 0 ? Board.WHITE : Board.BLACK, moves[i]);
+      }
+    }
+
+    private int[] buffer(int ply) {
+      if (ply >= buffers.length) {
+        int[][] grown = new int[ply + 1][];
+        System.arraycopy(buffers, 0, grown, 0, buffers.length);
+        buffers = grown;
+      }
+      if (buffers[ply] == null) {
+        buffers[ply] = new int[BitBoard.MAX_MOVES];
+      }
+      return buffers[ply];
+    }
+
+    long perft(int color, int depth) {
+      return perft(color, depth, 0);
+    }
+
+    private long perft(int color, int depth, int ply) {
+      if (depth == 0) {
+        return 1;
+      }
+      if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+        return 0;
+      }
+      if (depth == 1) {
+        return board.countMoves(color);
+      }
+      int[] moves = buffer(ply);
+      int count = board.generateMoves(color, moves);
+      long total = 0;
+      for (int i = 0; i < count; i++) {
+        board.makeMove(color, moves[i]);
+        total += perft(-color, depth - 1, ply + 1);
+        board.unmakeMove(color, moves[i]);
+      }
+      return total;
+    }
+
+    TreeMap<String, Long> divide(int color, int depth) {
+      TreeMap<String, Long> counts = new TreeMap<String, Long>();
+      int[] moves = buffer(0);
+      int count = board.generateMoves(color, moves);
+      for (int i = 0; i < count; i++) {
+        board.makeMove(color, moves[i]);
+        counts.put(BitBoard.decode(moves[i]).toString(),
+            perft(-color, depth - 1, 1));
+        board.unmakeMove(color, moves[i]);
+      }
+      return counts;
+    }
+  }
+
+  /**
+   * parse() reads a position written as described above.
+   *
+   * @return the moves that reach it
+   */
+  static Move[] parse(String position) {
+    position = position.trim();
+    if (position.length() == 0) {
+      return new Move[0];
+    }
+    String[] words = position.split("\\s+");
+    Move[] moves = new Move[words.length];
+    for (int i = 0; i < words.length; i++) {
+      String w = words[i];
+      if (w.length() == 2) {
+        moves[i] = new Move(w.charAt(0) - '0', w.charAt(1) - '0');
+      }
+      else if (w.length() == 5 && w.charAt(2) == '-') {
+        moves[i] = new Move(w.charAt(3) - '0', w.charAt(4) - '0',
+            w.charAt(0) - '0', w.charAt(1) - '0');
+      }
+      else {
+        throw new IllegalArgumentException("bad move " + w);
+      }
+    }
+    return moves;
+  }
+
+  private static Generator[] generators() {
+    return new Generator[] { new BoardGenerator(), new BitBoardGenerator(),
+        new PackedGenerator() };
+  }
+
+  private static String describe(String position) {
+    return position.length() == 0 ? "empty board" : position;
+  }
+
+  /**
+   * count() counts a position to the given depth with every generator,
+   * printing each count and its speed.
+   *
+   * @return the count every generator agrees on, or -1 if they disagree
+   */
+  static long count(String position, int depth) {
+    Move[] moves = parse(position);
+    int color = moves.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+    long agreed = -2;
+    for (Generator generator : generators()) {
+      generator.setUp(moves);
+      long start = System.nanoTime();
+      long count = generator.perft(color, depth);
+      long nanos = System.nanoTime() - start;
+      System.out.println(String.format("%-9s depth %d %12d %9.0f ms"
+          + " %8.2f Mleaves/s", generator.name, depth, count, nanos / 1e6,
+          nanos == 0 ? 0 : count * 1e3 / nanos));
+      agreed = agreed == -2 || agreed == count ? count : -1;
+    }
+    return agreed;
+  }
+
+  /**
+   * divide() prints each first move's count under every generator, marking
+   * the moves they disagree on.
+   *
+   * @return whether the generators agree on every first move
+   */
+  static boolean divide(String position, int depth) {
+    Move[] moves = parse(position);
+    int color = moves.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+    Generator[] generators = generators();
+    TreeMap<String, long[]> table = new TreeMap<String, long[]>();
+    for (int g = 0; g < generators.length; g++) {
+      generators[g].setUp(moves);
+      for (Map.Entry<String, Long> e : generators[g].divide(color, depth)
+          .entrySet()) {
+        long[] counts = table.get(e.getKey());
+        if (counts == null) {
+          counts = new long[generators.length];
+          Arrays.fill(counts, -1);
+          table.put(e.getKey(), counts);
+        }
+        counts[g] = e.getValue();
+      }
+    }
+    boolean agree = true;
+    StringBuilder header = new StringBuilder(String.format("%-24s", "move"));
+    for (Generator generator : generators) {
+      header.append(String.format(" %12s", generator.name));
+    }
+    System.out.println(header);
+    for (Map.Entry<String, long[]> e : table.entrySet()) {
+      StringBuilder line = new StringBuilder(String.format("%-24s",
+          e.getKey()));
+      boolean same = true;
+      for (long count : e.getValue()) {
+        line.append(count < 0 ? String.format(" %12s", "-")
+            : String.format(" %12d", count));
+        same = same && count == e.getValue()[0];
+      }
+      if (!same) {
+        line.append("  <- differs");
+        agree = false;
+      }
+      System.out.println(line);
+    }
+    System.out.println(table.size() + " moves");
+    return agree;
+  }
+
+  public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("-divide")) {
+      divide(args.length > 2 ? args[2] : "", Integer.parseInt(args[1]));
+      return;
+    }
+    if (args.length > 0) {
+      count(args.length > 1 ? args[1] : "", Integer.parseInt(args[0]));
+      return;
+    }
+    boolean passed = true;
+    for (Object[] entry : REFERENCE) {
+      String position = (String) entry[0];
+      long[] expected = (long[]) entry[1];
+      System.out.println(describe(position));
+      for (int depth = 1; depth <= expected.length; depth++) {
+        long count = count(position, depth);
+        if (count != expected[depth - 1]) {
+          System.out.println("expected " + expected[depth - 1]);
+          passed = false;
+        }
+      }
+    }
+    System.out.println("passed test? " + passed);
+  }
+
+}
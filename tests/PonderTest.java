@@ -0,0 +1,111 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.BitBoard;
+import ai.Board;
+
+public class PonderTest {
+
+  // The player's time limit, and how long the opponent "thinks".
+  private final static long LIMIT = 300, THINK = 600;
+
+  private static MachinePlayer player(BitBoard board,
+      ByteArrayOutputStream log) {
+    MachinePlayer player = new MachinePlayer(1, 2);
+    player.setTimeLimit(LIMIT);
+    player.setOpeningBook(null);
+    player.setPondering(true);
+    player.setSearchLog(new PrintStream(log, true), null);
+    int[][] adds = { { 3, 3 }, { 2, 5 }, { 5, 2 }, { 4, 4 }, { 1, 3 },
+        { 6, 1 } };
+    int color = Board.WHITE;
+    for (int[] add : adds) {
+      Move move = new Move(add[0], add[1]);
+      board.makeMove(color, move);
+      if (color == Board.WHITE) {
+        player.forceMove(move);
+      }
+      else {
+        player.opponentMove(move);
+      }
+      color = -color;
+    }
+    return player;
+  }
+
+  private static String lastLine(ByteArrayOutputStream log) {
+    String[] lines = log.toString().trim().split("\n");
+    return lines[lines.length - 1];
+  }
+
+  /**
+   * Plays the reply the player expects, and checks that its next move comes
+   * from the pondering search, within its own time limit but having
+   * searched for longer.
+   */
+  private static void testHit() throws InterruptedException {
+    BitBoard board = new BitBoard();
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    MachinePlayer player = player(board, log);
+    board.makeMove(Board.WHITE, player.chooseMove());
+    Move[] line = player.getLastSearch().principalVariation();
+    Thread.sleep(THINK);
+    long start = System.nanoTime();
+    player.opponentMove(line[1]);
+    board.makeMove(Board.BLACK, line[1]);
+    Move move = player.chooseMove();
+    long millis = (System.nanoTime() - start) / 1000000;
+    player.setPondering(false);
+    boolean passed = line.length > 1 && board.isValid(Board.WHITE, move)
+        && lastLine(log).contains("\"source\":\"ponder\"")
+        && millis <= LIMIT + 50
+        && player.getLastSearch().millis() >= LIMIT + THINK / 2;
+    System.out.println("passed test? " + passed);
+    System.out.println("ponder hit: depth " + player.getLastSearch().depth()
+        + " in " + millis + " ms");
+  }
+
+  /**
+   * Plays a reply the player does not expect, and checks that it stops
+   * pondering at once and then searches as usual.
+   */
+  private static void testMiss() throws InterruptedException {
+    BitBoard board = new BitBoard();
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    MachinePlayer player = player(board, log);
+    board.makeMove(Board.WHITE, player.chooseMove());
+    Move[] line = player.getLastSearch().principalVariation();
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    int count = board.generateMoves(Board.BLACK, moves);
+    Move reply = BitBoard.decode(moves[0]);
+    for (int i = 0; line.length > 1 && i < count; i++) {
+      reply = BitBoard.decode(moves[i]);
+      if (!reply.toString().equals(line[1].toString())) {
+        break;
+      }
+    }
+    Thread.sleep(THINK);
+    long start = System.nanoTime();
+    player.opponentMove(reply);
+    long cancel = (System.nanoTime() - start) / 1000000;
+    Move move = player.chooseMove();
+    long millis = (System.nanoTime() - start) / 1000000;
+    player.setPondering(false);
+    board.makeMove(Board.BLACK, reply);
+    boolean passed = board.isValid(Board.WHITE, move)
+        && lastLine(log).contains("\"source\":\"search\"") && cancel <= 50
+        && millis <= LIMIT + 50;
+    System.out.println("passed test? " + passed);
+    System.out.println("ponder miss: stopped in " + cancel + " ms");
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    testHit();
+    testMiss();
+  }
+
+}
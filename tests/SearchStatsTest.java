@@ -0,0 +1,129 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+import ai.EvalCache;
+import ai.ParallelSearch;
+import ai.SearchStats;
+import ai.TranspositionTable;
+
+public class SearchStatsTest {
+
+  private static BitBoard position() {
+    BitBoard board = new BitBoard();
+    int[][] adds = { { 3, 3 }, { 2, 5 }, { 5, 2 }, { 4, 4 }, { 1, 3 },
+        { 6, 1 } };
+    int color = Board.WHITE;
+    for (int[] add : adds) {
+      board.makeMove(color, new Move(add[0], add[1]));
+      color = -color;
+    }
+    return board;
+  }
+
+  /**
+   * playable() tells whether line can be played from board in turn, color
+   * first, leaving board as it was.
+   */
+  private static boolean playable(BitBoard board, int color, Move[] line) {
+    int made = 0;
+    while (made < line.length
+        && board.makeMove(made % 2 == 0 ? color : -color, line[made])) {
+      made++;
+    }
+    for (int i = made - 1; i >= 0; i--) {
+      board.unmakeMove(i % 2 == 0 ? color : -color, line[i]);
+    }
+    return made == line.length;
+  }
+
+  /**
+   * Checks that a fixed-depth search's figures add up, that its principal
+   * variation starts with the move chosen and can be played, and that only
+   * its leaves are looked up in the evaluation cache.
+   */
+  private static void testFixedDepth() {
+    BitBoard board = position();
+    SearchStats stats = new SearchStats();
+    Move move = AI.bestMove(Board.WHITE, board, 3, new TranspositionTable(),
+        new EvalCache(), stats);
+    Move[] pv = stats.principalVariation();
+    boolean passed = stats.depth() == 3 && stats.nodes() > 0
+        && stats.leafEvals() > 0 && stats.leafEvals() <= stats.nodes()
+        && stats.cutoffs() > 0 && stats.branchingFactor() > 1
+        && stats.tableHitRate() > 0 && stats.tableHitRate() <= 1
+        && stats.effectiveBranchingFactor() == 0
+        && pv.length > 1 && pv.length <= 3
+        && pv[0].toString().equals(move.toString())
+        && playable(board, Board.WHITE, pv);
+    // Only leaves probe the cache, so the same search again finds them all.
+    EvalCache cache = new EvalCache();
+    AI.bestMove(Board.WHITE, board, 2, new TranspositionTable(), cache);
+    SearchStats again = new SearchStats();
+    AI.bestMove(Board.WHITE, board, 2, new TranspositionTable(), cache, again);
+    passed = passed && again.evalCacheHitRate() == 1;
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks that an iterative search reports an effective branching factor,
+   * and that a parallel search's figures cover all its workers.
+   */
+  private static void testIterativeAndParallel() {
+    BitBoard board = position();
+    SearchStats stats = new SearchStats();
+    AI.bestMoveBefore(Board.WHITE, board, System.nanoTime() + 200000000L,
+        new TranspositionTable(), null, stats);
+    boolean passed = stats.depth() >= 2
+        && stats.effectiveBranchingFactor() > 1
+        && stats.evalCacheHitRate() == 0;
+
+    ParallelSearch search = new ParallelSearch(2);
+    Move move = search.bestMove(Board.WHITE, board, 3);
+    SearchStats parallel = search.lastStats();
+    search.shutdown();
+    passed = passed && parallel.depth() == 3
+        && parallel.nodes() == search.lastNodes()
+        && parallel.leafEvals() > 0
+        && parallel.principalVariation().length > 0
+        && parallel.principalVariation()[0].toString().equals(
+            move.toString());
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks that a MachinePlayer given a search log writes one line of JSON
+   * per move it chooses, with its name escaped.
+   */
+  private static void testLog() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MachinePlayer player = new MachinePlayer(1, 2);
+    player.setOpeningBook(null);
+    player.setSearchLog(new PrintStream(out, true), "test \"1\"\\2");
+    player.chooseMove();
+    player.opponentMove(new Move(4, 1));
+    player.chooseMove();
+    String[] lines = out.toString().trim().split("\n");
+    boolean passed = lines.length == 2;
+    for (String line : lines) {
+      passed = passed && line.startsWith("{\"player\":\"test \\\"1\\\"\\\\2\",")
+          && line.endsWith("]}") && line.contains("\"source\":\"search\"");
+    }
+    passed = passed && lines[1].contains("\"ply\":3,")
+        && lines[1].contains("\"depth\":2,");
+    System.out.println("passed test? " + passed);
+  }
+
+  public static void main(String[] args) {
+    testFixedDepth();
+    testIterativeAndParallel();
+    testLog();
+  }
+
+}
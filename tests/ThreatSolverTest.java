@@ -0,0 +1,183 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.Board;
+import ai.ThreatSolver;
+
+public class ThreatSolverTest {
+
+  /**
+   * wins() tells whether a move by color completes a network for it, by the
+   * rules: the mover loses if its opponent has a network afterwards.
+   */
+  private static boolean wins(BitBoard board, int color, int move) {
+    board.makeMove(color, move);
+    boolean won = !board.hasNetwork(-color) && board.hasNetwork(color);
+    board.unmakeMove(color, move);
+    return won;
+  }
+
+  private static boolean canWinNow(BitBoard board, int color) {
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    int count = board.generateMoves(color, moves);
+    for (int i = 0; i < count; i++) {
+      if (wins(board, color, moves[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * losesNow() tells, by trying every move, whether color cannot stop its
+   * opponent winning on the next move.
+   */
+  private static boolean losesNow(BitBoard board, int color) {
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    int count = board.generateMoves(color, moves);
+    boolean lost = true;
+    for (int i = 0; i < count && lost; i++) {
+      board.makeMove(color, moves[i]);
+      lost = board.hasNetwork(-color)
+          || (!board.hasNetwork(color) && canWinNow(board, -color));
+      board.unmakeMove(color, moves[i]);
+    }
+    return lost;
+  }
+
+  /**
+   * winsInTwo() tells, by trying every reply, whether move forces a network
+   * for color by its next move.
+   */
+  private static boolean winsInTwo(BitBoard board, int color, int move) {
+    if (wins(board, color, move)) {
+      return true;
+    }
+    board.makeMove(color, move);
+    boolean won = !board.hasNetwork(-color) && losesNow(board, -color);
+    board.unmakeMove(color, move);
+    return won;
+  }
+
+  /**
+   * Plays seeded games of random moves, with a greedy one now and then so
+   * that threats come up, and returns the moves of each game up to every
+   * tactical position reached.
+   */
+  private static ArrayList<int[]> endgames(int games) {
+    Random random = new Random(18);
+    ArrayList<int[]> found = new ArrayList<int[]>();
+    for (int game = 0; game < games; game++) {
+      BitBoard board = new BitBoard();
+      int[] played = new int[60];
+      int color = Board.WHITE;
+      for (int ply = 0; ply < played.length; ply++) {
+        if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+          break;
+        }
+        if (ThreatSolver.isTactical(board)) {
+          int[] line = new int[ply];
+          System.arraycopy(played, 0, line, 0, ply);
+          found.add(line);
+        }
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = board.generateMoves(color, moves);
+        played[ply] = random.nextInt(3) != 0 ? moves[random.nextInt(count)]
+            : BitBoard.encode(AI.bestMove(color, board, 1));
+        board.makeMove(color, played[ply]);
+        color = -color;
+      }
+    }
+    return found;
+  }
+
+  private static BitBoard replay(int[] line) {
+    BitBoard board = new BitBoard();
+    for (int i = 0; i < line.length; i++) {
+      board.makeMove(i % 2 == 0 ? Board.WHITE : Board.BLACK, line[i]);
+    }
+    return board;
+  }
+
+  /**
+   * Checks every win the solver finds in one or two moves, and every loss it
+   * proves in one, against a search of all the replies; and that a win in
+   * two leaves the opponent with a loss in one the solver can prove.
+   */
+  private static void testProofs(ArrayList<int[]> endgames) {
+    ThreatSolver solver = new ThreatSolver();
+    boolean passed = true;
+    int winsInTwo = 0, losses = 0;
+    for (int[] line : endgames) {
+      BitBoard board = replay(line);
+      int color = line.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+      Move win = solver.findWin(board, color, 2, 0);
+      if (win != null) {
+        int move = BitBoard.encode(win);
+        passed = passed && winsInTwo(board, color, move);
+        if (solver.depth() == 2) {
+          winsInTwo++;
+          board.makeMove(color, move);
+          passed = passed && solver.provesLoss(board, -color, 1, 0);
+          board.unmakeMove(color, move);
+        }
+      }
+      if (solver.provesLoss(board, color, 1, 0)) {
+        losses++;
+        passed = passed && losesNow(board, color);
+      }
+    }
+    System.out.println("passed test? "
+        + (passed && winsInTwo > 0 && losses > 0));
+    System.out.println(endgames.size() + " endgames, " + winsInTwo
+        + " wins in two, " + losses + " losses in one");
+  }
+
+  /**
+   * Checks that a MachinePlayer searching one ply deep, given the solver,
+   * still finds a win in two moves, which only the solver can see; and that
+   * only a timed player starts with the solver.
+   */
+  private static void testPlayer(ArrayList<int[]> endgames) {
+    ThreatSolver solver = new ThreatSolver();
+    boolean passed = false;
+    boolean defaults = !new MachinePlayer(1, 1).getThreatSolver()
+        && new MachinePlayer(1).getThreatSolver();
+    for (int[] line : endgames) {
+      BitBoard board = replay(line);
+      int color = line.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+      if (solver.findWin(board, color, 1, 0) != null
+          || solver.findWin(board, color, 2, 0) == null) {
+        continue;
+      }
+      MachinePlayer player = new MachinePlayer(color == Board.WHITE ? 1 : 0,
+          1);
+      player.setThreatSolver(true);
+      for (int i = 0; i < line.length; i++) {
+        Move m = BitBoard.decode(line[i]);
+        if ((i % 2 == 0) == (color == Board.WHITE)) {
+          player.forceMove(m);
+        }
+        else {
+          player.opponentMove(m);
+        }
+      }
+      passed = winsInTwo(board, color, BitBoard.encode(player.chooseMove()));
+      break;
+    }
+    System.out.println("passed test? " + (passed && defaults));
+  }
+
+  public static void main(String[] args) {
+    ArrayList<int[]> endgames = endgames(200);
+    testProofs(endgames);
+    testPlayer(endgames);
+  }
+
+}
@@ -0,0 +1,109 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.BitBoard;
+import ai.Board;
+import ai.ThreatSolver;
+import ai.TimeManager;
+
+public class TimeManagerTest {
+
+  private final static long LIMIT = 400;
+
+  /**
+   * critical() plays random moves until the side to move, color, faces a
+   * network its opponent can complete next move, and returns that position.
+   */
+  private static BitBoard critical(Random random, int color) {
+    ThreatSolver solver = new ThreatSolver();
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    while (true) {
+      BitBoard board = new BitBoard();
+      int c = Board.WHITE;
+      for (int ply = 0; ply < 60; ply++) {
+        if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+          break;
+        }
+        if (c == color && solver.findWin(board, -c, 1, 0) != null
+            && solver.findWin(board, c, 1, 0) == null) {
+          return board;
+        }
+        board.makeMove(c, moves[random.nextInt(board.generateMoves(c,
+            moves))]);
+        c = -c;
+      }
+    }
+  }
+
+  /**
+   * Checks the shares of the limit given to a quiet opening, to a position
+   * past the add moves, and to one with a threat of a network.
+   */
+  private static void testShares() {
+    TimeManager manager = new TimeManager();
+    BitBoard board = new BitBoard();
+    board.makeMove(Board.WHITE, new Move(3, 3));
+    board.makeMove(Board.BLACK, new Move(4, 4));
+    boolean passed = manager.share(board, Board.WHITE)
+        == TimeManager.QUIET_SHARE
+        && manager.allocate(board, Board.WHITE, LIMIT) == LIMIT / 2;
+
+    Random random = new Random(5);
+    BitBoard threat = critical(random, Board.WHITE);
+    passed = passed && manager.share(threat, Board.WHITE) == 1
+        && manager.allocate(threat, Board.WHITE, LIMIT) == LIMIT;
+
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    BitBoard late = new BitBoard();
+    int c = Board.WHITE;
+    while (late.numberChips(Board.BLACK) < 10) {
+      late.makeMove(c, moves[random.nextInt(late.generateMoves(c, moves))]);
+      c = -c;
+    }
+    passed = passed && manager.share(late, c) >= TimeManager.SHARP_SHARE;
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Checks that a managed player stays within its limit, stops deepening
+   * sooner on a quiet position than an unmanaged one, and logs what it was
+   * given.
+   */
+  private static void testPlayer() {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    MachinePlayer managed = new MachinePlayer(1, 2);
+    MachinePlayer full = new MachinePlayer(1, 2);
+    boolean passed = managed.getTimeManagement();
+    full.setTimeManagement(false);
+    managed.setSearchLog(new PrintStream(log, true), null);
+    long[] millis = new long[2];
+    MachinePlayer[] players = { managed, full };
+    for (int i = 0; i < players.length; i++) {
+      players[i].setTimeLimit(LIMIT);
+      players[i].setOpeningBook(null);
+      players[i].forceMove(new Move(3, 3));
+      players[i].opponentMove(new Move(4, 4));
+      long start = System.nanoTime();
+      players[i].chooseMove();
+      millis[i] = (System.nanoTime() - start) / 1000000;
+    }
+    passed = passed && managed.getLastAllocation() == LIMIT / 2
+        && full.getLastAllocation() == LIMIT
+        && millis[0] <= LIMIT + 50 && millis[0] < millis[1]
+        && log.toString().contains("\"allocatedMillis\":" + LIMIT / 2 + ",");
+    System.out.println("passed test? " + passed);
+    System.out.println("quiet position: " + millis[0] + " ms managed, "
+        + millis[1] + " ms unmanaged");
+  }
+
+  public static void main(String[] args) {
+    testShares();
+    testPlayer();
+  }
+
+}
@@ -0,0 +1,398 @@
+package tests;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import player.MachinePlayer;
+import player.Move;
+import ai.BitBoard;
+import ai.Board;
+import ai.OpeningBook;
+import ai.SearchStats;
+
+/**
+ * Tournament plays two MachinePlayer variants against each other, without
+ * the GUI referee, over many games spread across a thread pool, and reports
+ * how they did: score with a 95% confidence interval, the Elo difference it
+ * implies, average search depth and nodes per second.
+ *
+ * Each game starts from a few random add moves, and each opening is played
+ * twice with the colors swapped, so that the deterministic players do not
+ * replay the same game and neither gains from the opening. Moves are
+ * refereed on a BitBoard: an illegal move, or one that takes longer than
+ * the move limit, loses the game.
+ *
+ * Usage: java tests.Tournament [option value]... [variant [variant]]
+ *
+ * Options are -games (default 100, rounded up to an even number), -threads
+ * (default one per processor), -limit (the move limit in milliseconds,
+ * default 5000), -opening (random plies before the players take over,
+ * default 2), -seed, and -log, a file to which every player writes a line
+ * of JSON about each move it chooses (see MachinePlayer.setSearchLog()),
+ * named for its variant and game.
+ *
+ * A variant is a name, optionally followed by a colon and comma-separated
+ * settings: time (milliseconds per move, or 0 to search to a fixed depth;
+ * default MachinePlayer.DEFAULT_TIME_LIMIT), depth (default 3), threads
+ * (search threads, default 1), cache (evaluation cache slots, 0 for none),
+ * book (on or off), solver (the threat solver, on or off), ponder (on or
+ * off, default off) and manage (time management, on or off; see
+ * MachinePlayer.setTimeManagement()). For example:
+ *
+ *   java tests.Tournament -games 400 -threads 4 base book:book=off
+ *
+ * Timed variants search for as long as they may, so give each game a
+ * processor of its own: -threads times the variants' search threads should
+ * not exceed the number of processors. A pondering variant searches on its
+ * opponent's time too, so count it as two threads.
+ */
+public class Tournament {
+
+  // Games reaching this many plies are drawn.
+  private final static int MAX_PLIES = 400;
+  // z for a 95% confidence interval.
+  private final static double Z = 1.96;
+
+  /**
+   * A Variant is a named set of MachinePlayer settings.
+   */
+  static class Variant {
+    final String name;
+    long time = MachinePlayer.DEFAULT_TIME_LIMIT;
+    int depth = 3;
+    int threads = 1;
+    int cache = -1;
+    boolean book = true;
+    boolean solver = true;
+    boolean ponder = false;
+    boolean manage = true;
+
+    /**
+     * Parses a variant from "name" or "name:key=value,key=value".
+     */
+    Variant(String spec) {
+      int colon = spec.indexOf(':');
+      name = colon < 0 ? spec : spec.substring(0, colon);
+      if (colon < 0) {
+        return;
+      }
+      for (String setting : spec.substring(colon + 1).split(",")) {
+        String[] kv = setting.split("=", 2);
+        if (kv.length != 2) {
+          throw new IllegalArgumentException("bad setting " + setting);
+        }
+        if (kv[0].equals("time")) {
+          time = Long.parseLong(kv[1]);
+        }
+        else if (kv[0].equals("depth")) {
+          depth = Integer.parseInt(kv[1]);
+        }
+        else if (kv[0].equals("threads")) {
+          threads = Integer.parseInt(kv[1]);
+        }
+        else if (kv[0].equals("cache")) {
+          cache = Integer.parseInt(kv[1]);
+        }
+        else if (kv[0].equals("book")) {
+          book = kv[1].equals("on");
+        }
+        else if (kv[0].equals("solver")) {
+          solver = kv[1].equals("on");
+        }
+        else if (kv[0].equals("ponder")) {
+          ponder = kv[1].equals("on");
+        }
+        else if (kv[0].equals("manage")) {
+          manage = kv[1].equals("on");
+        }
+        else {
+          throw new IllegalArgumentException("unknown setting " + kv[0]);
+        }
+      }
+    }
+
+    /**
+     * create() returns a new player of this variant.
+     *
+     * @param color 0 for black, 1 for white, as MachinePlayer takes it
+     */
+    MachinePlayer create(int color) {
+      MachinePlayer player = new MachinePlayer(color, depth);
+      player.setTimeLimit(time);
+      player.setThreads(threads);
+      if (cache >= 0) {
+        player.setEvalCacheSize(cache);
+      }
+      player.setOpeningBook(book ? OpeningBook.standard() : null);
+      player.setThreatSolver(solver);
+      player.setPondering(ponder);
+      player.setTimeManagement(manage);
+      return player;
+    }
+  }
+
+  /**
+   * What one side did in one game.
+   */
+  static class Side {
+    int searches, depths;
+    long nodes, nanos, maxMillis;
+    // The milliseconds the searches were given, and took.
+    long allocated, used;
+
+    void add(Side other) {
+      searches += other.searches;
+      depths += other.depths;
+      allocated += other.allocated;
+      used += other.used;
+      nodes += other.nodes;
+      nanos += other.nanos;
+      maxMillis = Math.max(maxMillis, other.maxMillis);
+    }
+  }
+
+  /**
+   * The outcome of one game.
+   */
+  static class Game {
+    // Board.WHITE, Board.BLACK, or Board.EMPTY for a draw.
+    int winner = Board.EMPTY;
+    String reason = "length";
+    int plies;
+    // sides[1] is white and sides[0] black.
+    final Side[] sides = { new Side(), new Side() };
+  }
+
+  /**
+   * play() plays one game between new players of the given variants, after
+   * the given opening moves, logging their moves to log unless it is null.
+   */
+  static Game play(Variant white, Variant black, int[] opening,
+      long limitMillis, PrintStream log, int number) {
+    MachinePlayer[] players = { black.create(0), white.create(1) };
+    players[0].setSearchLog(log, black.name + " game " + number);
+    players[1].setSearchLog(log, white.name + " game " + number);
+    try {
+      return play(players, opening, limitMillis);
+    }
+    finally {
+      // Stops any search and pondering threads.
+      for (MachinePlayer player : players) {
+        player.setThreads(1);
+        player.setPondering(false);
+      }
+    }
+  }
+
+  private static Game play(MachinePlayer[] players, int[] opening,
+      long limitMillis) {
+    BitBoard board = new BitBoard();
+    Game game = new Game();
+    int color = Board.WHITE;
+    for (int ply = 0; ply < MAX_PLIES; ply++) {
+      int c = color == Board.WHITE ? 1 : 0;
+      Move move;
+      if (ply < opening.length) {
+        move = BitBoard.decode(opening[ply]);
+        players[c].forceMove(move);
+      }
+      else {
+        long start = System.nanoTime();
+        move = players[c].chooseMove();
+        long millis = (System.nanoTime() - start) / 1000000;
+        Side side = game.sides[c];
+        side.maxMillis = Math.max(side.maxMillis, millis);
+        SearchStats stats = players[c].getLastSearch();
+        if (stats.depth() > 0) {
+          side.searches++;
+          side.depths += stats.depth();
+          side.nodes += stats.nodes();
+          side.nanos += (long) (stats.millis() * 1e6);
+          side.allocated += players[c].getLastAllocation();
+          side.used += millis;
+        }
+        if (millis > limitMillis) {
+          return end(game, -color, "time", ply + 1);
+        }
+      }
+      if (move == null || !board.makeMove(color, move)) {
+        return end(game, -color, "illegal move", ply + 1);
+      }
+      players[1 - c].opponentMove(move);
+      // A move completing both networks loses.
+      if (board.hasNetwork(-color)) {
+        return end(game, -color, "network", ply + 1);
+      }
+      if (board.hasNetwork(color)) {
+        return end(game, color, "network", ply + 1);
+      }
+      color = -color;
+    }
+    game.plies = MAX_PLIES;
+    return game;
+  }
+
+  private static Game end(Game game, int winner, String reason, int plies) {
+    game.winner = winner;
+    game.reason = reason;
+    game.plies = plies;
+    return game;
+  }
+
+  /**
+   * opening() returns the given number of random, valid add moves.
+   */
+  static int[] opening(Random random, int plies) {
+    BitBoard board = new BitBoard();
+    int[] moves = new int[BitBoard.MAX_MOVES];
+    int[] opening = new int[plies];
+    int color = Board.WHITE;
+    for (int ply = 0; ply < plies; ply++) {
+      opening[ply] = moves[random.nextInt(board.generateMoves(color, moves))];
+      board.makeMove(color, opening[ply]);
+      color = -color;
+    }
+    return opening;
+  }
+
+  /**
+   * wilson() returns the Wilson score interval, [low, high], for a
+   * proportion p of n trials.
+   */
+  static double[] wilson(double p, int n) {
+    double z2 = Z * Z / n;
+    double center = (p + z2 / 2) / (1 + z2);
+    double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n)) / (1 + z2);
+    return new double[] { center - half, center + half };
+  }
+
+  /**
+   * elo() returns the rating difference an expected score of p implies.
+   */
+  static double elo(double p) {
+    p = Math.min(Math.max(p, 1e-6), 1 - 1e-6);
+    return -400 * Math.log10(1 / p - 1);
+  }
+
+  public static void main(String[] args) throws InterruptedException,
+      ExecutionException, FileNotFoundException {
+    int games = 100, threads = Runtime.getRuntime().availableProcessors();
+    int openingPlies = 2;
+    long limit = 5000, seed = 19;
+    PrintStream log = null;
+    ArrayList<Variant> variants = new ArrayList<Variant>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-games")) {
+        games = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-threads")) {
+        threads = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-limit")) {
+        limit = Long.parseLong(args[++i]);
+      }
+      else if (args[i].equals("-opening")) {
+        openingPlies = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-seed")) {
+        seed = Long.parseLong(args[++i]);
+      }
+      else if (args[i].equals("-log")) {
+        log = new PrintStream(new FileOutputStream(args[++i]), true);
+      }
+      else {
+        variants.add(new Variant(args[i]));
+      }
+    }
+    while (variants.size() < 2) {
+      variants.add(new Variant(variants.isEmpty() ? "a" : "b"));
+    }
+    final Variant a = variants.get(0), b = variants.get(1);
+    final long moveLimit = limit;
+    final PrintStream moveLog = log;
+
+    // Game 2i and 2i + 1 share an opening, with a white in the first.
+    Random random = new Random(seed);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    ArrayList<Future<Game>> results = new ArrayList<Future<Game>>();
+    long start = System.nanoTime();
+    for (int i = 0; i < (games + 1) / 2; i++) {
+      final int[] opening = opening(random, openingPlies);
+      final int number = 2 * i;
+      results.add(pool.submit(new Callable<Game>() {
+        public Game call() {
+          return play(a, b, opening, moveLimit, moveLog, number);
+        }
+      }));
+      results.add(pool.submit(new Callable<Game>() {
+        public Game call() {
+          return play(b, a, opening, moveLimit, moveLog, number + 1);
+        }
+      }));
+    }
+
+    int wins = 0, losses = 0, draws = 0, plies = 0;
+    int[] byTime = new int[2], byIllegal = new int[2];
+    Side[] sides = { new Side(), new Side() };
+    for (int i = 0; i < results.size(); i++) {
+      Game game = results.get(i).get();
+      // The color a played in this game.
+      int aColor = i % 2 == 0 ? Board.WHITE : Board.BLACK;
+      sides[0].add(game.sides[aColor == Board.WHITE ? 1 : 0]);
+      sides[1].add(game.sides[aColor == Board.WHITE ? 0 : 1]);
+      plies += game.plies;
+      if (game.winner == Board.EMPTY) {
+        draws++;
+        continue;
+      }
+      int loser = game.winner == aColor ? 1 : 0;
+      if (loser == 1) {
+        wins++;
+      }
+      else {
+        losses++;
+      }
+      if (game.reason.equals("time")) {
+        byTime[loser]++;
+      }
+      else if (game.reason.equals("illegal move")) {
+        byIllegal[loser]++;
+      }
+    }
+    pool.shutdown();
+    if (log != null) {
+      log.close();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    int n = results.size();
+    double score = (wins + draws / 2.0) / n;
+    double[] interval = wilson(score, n);
+    System.out.println(String.format("%d games in %.0f s on %d threads,"
+        + " %.1f plies a game", n, seconds, threads, (double) plies / n));
+    System.out.println(String.format("%s vs %s: +%d -%d =%d, score %.3f"
+        + " [%.3f, %.3f], Elo %+.0f [%+.0f, %+.0f]", a.name, b.name, wins,
+        losses, draws, score, interval[0], interval[1], elo(score),
+        elo(interval[0]), elo(interval[1])));
+    System.out.println("variant      depth   knodes/s   alloc ms"
+        + "   used ms   max ms   lost on time   illegal");
+    for (int v = 0; v < 2; v++) {
+      Side side = sides[v];
+      int searches = Math.max(side.searches, 1);
+      System.out.println(String.format(
+          "%-10s %7.2f %10.1f %10d %9d %8d %14d %9d", variants.get(v).name,
+          (double) side.depths / searches, side.nanos == 0 ? 0 : side.nodes
+              * 1e6 / side.nanos, side.allocated / searches, side.used
+              / searches, side.maxMillis, byTime[v], byIllegal[v]));
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+package tests;
+
+import java.util.Random;
+
+import player.Move;
+import ai.AI;
+import ai.BitBoard;
+import ai.TranspositionTable;
+
+public class TranspositionTableTest {
+
+  /**
+   * Checks that every field of an entry reads back as stored, including
+   * negative and winning scores and step moves, and that DEPTH_PREFERRED
+   * keeps the deeper entry only within a search.
+   */
+  private static void testProbeAndStore() {
+    TranspositionTable table = new TranspositionTable(16,
+        TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+    int step = BitBoard.encode(new Move(6, 1, 7, 3));
+    boolean passed = table.probe(5) == TranspositionTable.MISS;
+    table.store(5, 7, TranspositionTable.LOWER, -AI.WIN + 3, step);
+    long entry = table.probe(5);
+    passed = passed && TranspositionTable.depth(entry) == 7
+        && TranspositionTable.bound(entry) == TranspositionTable.LOWER
+        && TranspositionTable.score(entry) == -AI.WIN + 3
+        && TranspositionTable.move(entry) == step;
+    // A shallower entry for a colliding key loses to it, until newSearch().
+    table.store(5 + 16, 2, TranspositionTable.EXACT, 40, BitBoard.NO_MOVE);
+    passed = passed && table.probe(5 + 16) == TranspositionTable.MISS
+        && table.probe(5) == entry;
+    table.newSearch();
+    table.store(5 + 16, 2, TranspositionTable.EXACT, 40, BitBoard.NO_MOVE);
+    entry = table.probe(5 + 16);
+    passed = passed && table.probe(5) == TranspositionTable.MISS
+        && TranspositionTable.score(entry) == 40
+        && TranspositionTable.move(entry) == BitBoard.NO_MOVE;
+    // Storing no move keeps the position's old one.
+    table.store(5, 3, TranspositionTable.UPPER, 0, step);
+    table.store(5, 3, TranspositionTable.UPPER, 0, BitBoard.NO_MOVE);
+    passed = passed && TranspositionTable.move(table.probe(5)) == step;
+    table.clear();
+    passed = passed && table.probe(5) == TranspositionTable.MISS;
+    System.out.println("passed test? " + passed);
+  }
+
+  /**
+   * Has several threads store and probe the same small table at once, each
+   * storing entries whose fields all follow from the key, and checks that no
+   * probe ever returns an entry mixed from two stores.
+   */
+  private static void testSharedWithoutLocking() throws InterruptedException {
+    final TranspositionTable table = new TranspositionTable(64,
+        TranspositionTable.ReplacementPolicy.ALWAYS);
+    final boolean[] torn = new boolean[1];
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final long seed = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          Random random = new Random(seed);
+          for (int i = 0; i < 2000000; i++) {
+            long key = random.nextInt(1000) * 0x9E3779B97F4A7C15L;
+            int k = (int) (key >>> 40);
+            if (random.nextBoolean()) {
+              table.store(key, k & 0x3F, TranspositionTable.EXACT, k,
+                  (k & 0xFFF) | 1);
+            }
+            else {
+              long entry = table.probe(key);
+              if (entry != TranspositionTable.MISS
+                  && (TranspositionTable.score(entry) != k
+                      || TranspositionTable.depth(entry) != (k & 0x3F)
+                      || TranspositionTable.move(entry) != ((k & 0xFFF) | 1))) {
+                torn[0] = true;
+              }
+            }
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    System.out.println("passed test? " + !torn[0]);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    testProbeAndStore();
+    testSharedWithoutLocking();
+  }
+
+}